@@ -0,0 +1,226 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The AdjacencyRow class stores the neighbours of a vertex of a CapGraph in an int array, with O(1) expected time
+ * edge removal and membership test even on the rows of hub vertexes with tens of thousands of neighbours:
+ *		an edge is removed moving the last neighbour of the row in its position (swap-remove), so the order of the
+ *		  neighbours is not kept
+ *		rows longer than INDEX_THRESHOLD keep a position index: an open addressing table (linear probing) from each
+ *		  distinct neighbour to one of its positions, the other positions of parallel edges toward the same neighbour
+ *		  being chained in an array parallel to the row
+ *		shorter rows are scanned, faster than hashing on a few neighbours and without the memory of the index
+ **/
+
+class AdjacencyRow {
+
+	// rows with more neighbours than this keep a position index
+	static final int INDEX_THRESHOLD = 16;
+	private static final int EMPTY = -1;
+
+	// neighbours in positions from 0 to size-1
+	private int[] targets;
+	private int size = 0;
+	// stamp of the last component search of CapGraph (splitComponents) that reached the vertex of this row, so that the
+	// search marks the vertexes it visits without a set of its own
+	int stamp = 0;
+	// position index, null until the row grows over INDEX_THRESHOLD: keys[slot] is a neighbour and heads[slot] its
+	// first position (EMPTY for a free slot), next[position] the following position of the same neighbour
+	private int[] keys = null;
+	private int[] heads = null;
+	private int[] next = null;
+	private int mask = 0;
+
+	AdjacencyRow() {
+		this(4);
+	}
+
+	AdjacencyRow(int capacity) {
+		targets = new int[Math.max(1, capacity)];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/*
+	 * Return the neighbour in position, from 0 to size-1
+	 */
+	int get(int position) {
+		return targets[position];
+	}
+
+	/*
+	 * Add an edge toward target
+	 */
+	void add(int target) {
+		if (size == targets.length) {
+			grow(2 * size);
+		}
+		targets[size] = target;
+		if (keys != null) {
+			link(target, size);
+		}
+		size++;
+		if (keys == null && size > INDEX_THRESHOLD) {
+			buildIndex();
+		}
+	}
+
+	/*
+	 * Make room for capacity neighbours, so that adding them doesn't grow the row and its index more than once
+	 */
+	void ensureCapacity(int capacity) {
+		if (capacity > targets.length) {
+			grow(capacity);
+		}
+	}
+
+	boolean contains(int target) {
+		return position(target) != EMPTY;
+	}
+
+	/*
+	 * Return the number of edges toward target, following the chain of its positions when the row has an index
+	 */
+	int count(int target) {
+		int toReturn = 0;
+		if (keys == null) {
+			for (int p = 0; p < size; p++) {
+				if (targets[p] == target) {
+					toReturn++;
+				}
+			}
+			return toReturn;
+		}
+		for (int p = heads[slot(target)]; p != EMPTY; p = next[p]) {
+			toReturn++;
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Remove one edge toward target, return false if the row has none
+	 */
+	boolean remove(int target) {
+		if (keys == null) {
+			for (int p = 0; p < size; p++) {
+				if (targets[p] == target) {
+					targets[p] = targets[--size];
+					return true;
+				}
+			}
+			return false;
+		}
+
+		int slot = slot(target);
+		int p = heads[slot];
+		if (p == EMPTY) return false;
+		heads[slot] = next[p];
+		if (heads[slot] == EMPTY) {
+			deleteSlot(slot);
+		}
+
+		// move the last neighbour in the free position, updating the chain of its positions
+		int last = --size;
+		if (p != last) {
+			int moved = targets[last];
+			targets[p] = moved;
+			int movedSlot = slot(moved);
+			if (heads[movedSlot] == last) {
+				heads[movedSlot] = p;
+			} else {
+				int q = heads[movedSlot];
+				while (next[q] != last) {
+					q = next[q];
+				}
+				next[q] = p;
+			}
+			next[p] = next[last];
+		}
+		return true;
+	}
+
+	/*
+	 * Remove all edges toward target and return their number
+	 */
+	int removeAll(int target) {
+		int removed = 0;
+		while (remove(target)) {
+			removed++;
+		}
+		return removed;
+	}
+
+	private int position(int target) {
+		// Return one position of target, EMPTY if the row doesn't contain it
+		if (keys == null) {
+			for (int p = 0; p < size; p++) {
+				if (targets[p] == target) return p;
+			}
+			return EMPTY;
+		}
+		return heads[slot(target)];
+	}
+
+	private void grow(int capacity) {
+		targets = Arrays.copyOf(targets, Math.max(4, capacity));
+		if (keys != null) {
+			buildIndex();
+		}
+	}
+
+	private void buildIndex() {
+		// size the table for the capacity of the row with a load factor under 2/3 and index all positions
+		int tableSize = Integer.highestOneBit(targets.length + targets.length / 2) << 1;
+		keys = new int[tableSize];
+		heads = new int[tableSize];
+		Arrays.fill(heads, EMPTY);
+		next = new int[targets.length];
+		mask = tableSize - 1;
+		for (int p = 0; p < size; p++) {
+			link(targets[p], p);
+		}
+	}
+
+	private void link(int target, int position) {
+		// add position at the head of the chain of target
+		int slot = slot(target);
+		if (heads[slot] == EMPTY) {
+			keys[slot] = target;
+		}
+		next[position] = heads[slot];
+		heads[slot] = position;
+	}
+
+	private int slot(int target) {
+		// Return the slot of target, or the free slot where it would be stored
+		int slot = hash(target) & mask;
+		while (heads[slot] != EMPTY && keys[slot] != target) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void deleteSlot(int slot) {
+		// Free slot shifting back the following keys that can't be found anymore across a free slot
+		int free = slot;
+		for (int s = (slot + 1) & mask; heads[s] != EMPTY; s = (s + 1) & mask) {
+			int home = hash(keys[s]) & mask;
+			if (((s - home) & mask) >= ((s - free) & mask)) {
+				keys[free] = keys[s];
+				heads[free] = heads[s];
+				free = s;
+			}
+		}
+		heads[free] = EMPTY;
+	}
+
+	private static int hash(int target) {
+		int h = target * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
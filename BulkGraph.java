@@ -0,0 +1,15 @@
+package graph;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The BulkGraph interface extends the Graph's interface for graph data structures that can receive many edges at once,
+ * as the loaders do. Compared to calling addVertex/addEdge for each line it lets the implementation grow its storage
+ * once per batch and skip the caller side check of which vertices were already added.
+ **/
+
+public interface BulkGraph extends Graph {
+	/* Adds count edges stored as couples in edges: edges[2*i] is the "from" vertex and edges[2*i+1] the "to" vertex
+	 * of the i-th edge. The end points are added as vertices if they do not belong to the graph yet. */
+	public void addEdges(int[] edges, int count);
+}
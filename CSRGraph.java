@@ -0,0 +1,594 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The CSRGraph class implements the Graph's interface storing the adjacency in compressed sparse rows:
+ * vertices are renumbered with a dense index (in increasing order of their integer name) and the neighbours of
+ * the vertex with index i are stored in targets[offsets[i]] ... targets[offsets[i+1]-1] as indexes as well,
+ * sorted in increasing order so that an edge can be found with a binary search in its row.
+ *
+ * Vertices and edges added with addVertex/addEdge (for example by GraphLoader) are buffered and the rows are built
+ * once, the first time the graph is queried. Adding more vertices or edges after that point is allowed but forces
+ * a rebuild on the next query, so the class is meant to be loaded once and then read many times.
+ *
+ * The class offers the same read methods of CapGraph (getNeighbour, getVertices, getCCs, GetVertexesNumber, ...)
+ * so it can replace it wherever the graph is only traversed; connected components are returned as CapGraph
+ * because MinCut and denseComunities modify them. The rows are also read through the RowGraph interface, shared with
+ * MappedGraph.
+ **/
+
+public class CSRGraph implements BulkGraph, RowGraph {
+
+	// vertices and edges (as couples from, to) added since the last build
+	private int[] pendingVertices = new int[16];
+	private int pendingVerticesNumber = 0;
+	private int[] pendingEdges = new int[32];
+	private int pendingEdgesNumber = 0;
+	private boolean built = false;
+
+	// integer name of the vertex with a given index, sorted in increasing order
+	private int[] vertexIds = new int[0];
+	// neighbours of vertex i are targets[offsets[i]] ... targets[offsets[i+1]-1]
+	private int[] offsets = new int[1];
+	private int[] targets = new int[0];
+
+	public CSRGraph() {
+	}
+
+	/*
+	 * Build a compressed copy of a CapGraph
+	 */
+	public CSRGraph(CapGraph source) {
+		for (Integer v:source.getVertices()) {
+			addVertex(v);
+		}
+		for (Integer v:source.getVertices()) {
+			AdjacencyRow neighbours = source.neighbours(v);
+			for (int k = 0; k < neighbours.size(); k++) {
+				addEdge(v, neighbours.get(k));
+			}
+		}
+		build();
+	}
+
+	/*
+	 * Wrap already built rows - vertexIds and each row must be sorted and targets must hold indexes in vertexIds
+	 */
+	CSRGraph(int[] vertexIds, int[] offsets, int[] targets) {
+		this.vertexIds = vertexIds;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.built = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addVertex(int)
+	 */
+	@Override
+	public void addVertex(int num) {
+		thaw();
+		if (pendingVerticesNumber == pendingVertices.length) {
+			pendingVertices = Arrays.copyOf(pendingVertices, pendingVertices.length * 2);
+		}
+		pendingVertices[pendingVerticesNumber++] = num;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addEdge(int, int)
+	 *
+	 * Both end points become vertices of the graph if they were not added before
+	 */
+	@Override
+	public void addEdge(int from, int to) {
+		thaw();
+		if (pendingEdgesNumber + 2 > pendingEdges.length) {
+			pendingEdges = Arrays.copyOf(pendingEdges, pendingEdges.length * 2);
+		}
+		pendingEdges[pendingEdgesNumber++] = from;
+		pendingEdges[pendingEdgesNumber++] = to;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.BulkGraph#addEdges(int[], int)
+	 */
+	@Override
+	public void addEdges(int[] edges, int count) {
+		thaw();
+		if (pendingEdgesNumber + 2 * count > pendingEdges.length) {
+			pendingEdges = Arrays.copyOf(pendingEdges, Math.max(pendingEdges.length * 2, pendingEdgesNumber + 2 * count));
+		}
+		System.arraycopy(edges, 0, pendingEdges, pendingEdgesNumber, 2 * count);
+		pendingEdgesNumber += 2 * count;
+	}
+
+	private void thaw() {
+		// move the built rows back in the pending buffers so that new vertices and edges can be appended
+		if (!built) return;
+
+		pendingVertices = Arrays.copyOf(vertexIds, Math.max(16, vertexIds.length));
+		pendingVerticesNumber = vertexIds.length;
+		pendingEdges = new int[Math.max(32, 2 * targets.length)];
+		pendingEdgesNumber = 0;
+		for (int i = 0; i < vertexIds.length; i++) {
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				pendingEdges[pendingEdgesNumber++] = vertexIds[i];
+				pendingEdges[pendingEdgesNumber++] = vertexIds[targets[k]];
+			}
+		}
+		built = false;
+	}
+
+	private void build() {
+		// Build the compressed rows from the pending vertices and edges
+		// Algorithm implemented:
+		//		Collect every vertex name (added explicitly or as edge end point), sort it and drop duplicates
+		//		Count the out degree of each vertex and turn the counts in row offsets (prefix sum)
+		//		Place each edge target in the row of its source and sort each row by target index
+		if (built) return;
+
+		int[] names = Arrays.copyOf(pendingVertices, pendingVerticesNumber + pendingEdgesNumber);
+		System.arraycopy(pendingEdges, 0, names, pendingVerticesNumber, pendingEdgesNumber);
+		Arrays.sort(names);
+		int n = 0;
+		for (int i = 0; i < names.length; i++) {
+			if (n == 0 || names[i] != names[n - 1]) {
+				names[n++] = names[i];
+			}
+		}
+		vertexIds = Arrays.copyOf(names, n);
+
+		int edgesNumber = pendingEdgesNumber / 2;
+		int[] from = new int[edgesNumber];
+		offsets = new int[n + 1];
+		targets = new int[edgesNumber];
+		for (int e = 0; e < edgesNumber; e++) {
+			from[e] = Arrays.binarySearch(vertexIds, pendingEdges[2 * e]);
+			targets[e] = Arrays.binarySearch(vertexIds, pendingEdges[2 * e + 1]);
+			offsets[from[e] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] cursor = Arrays.copyOf(offsets, n);
+		int[] placed = new int[edgesNumber];
+		for (int e = 0; e < edgesNumber; e++) {
+			placed[cursor[from[e]]++] = targets[e];
+		}
+		targets = placed;
+		for (int i = 0; i < n; i++) {
+			Arrays.sort(targets, offsets[i], offsets[i + 1]);
+		}
+
+		// release the buffers, they are rebuilt from the rows if the graph is modified again
+		pendingVertices = new int[16];
+		pendingVerticesNumber = 0;
+		pendingEdges = new int[32];
+		pendingEdgesNumber = 0;
+		built = true;
+	}
+
+	/*
+	 * Return the number of vertices in the graph
+	 */
+	public int vertexCount() {
+		build();
+		return vertexIds.length;
+	}
+
+	/*
+	 * Return the number of directed edges in the graph
+	 */
+	public int edgeCount() {
+		build();
+		return targets.length;
+	}
+
+	/*
+	 * Return the dense index of the vertex named id, or -1 if the vertex doesn't belong to the graph
+	 */
+	public int indexOf(int id) {
+		build();
+		int index = Arrays.binarySearch(vertexIds, id);
+		return index < 0 ? -1 : index;
+	}
+
+	/*
+	 * Return the integer name of the vertex with the given dense index
+	 */
+	public int idOf(int index) {
+		build();
+		return vertexIds[index];
+	}
+
+	/*
+	 * Return the number of neighbours of the vertex with the given dense index
+	 */
+	public int degree(int index) {
+		build();
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/*
+	 * Return the position in targets of the edge between the vertexes with indexes from and to, or -1 if there
+	 * is no such edge
+	 */
+	public int slotOf(int from, int to) {
+		build();
+		int slot = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+		return slot < 0 ? -1 : slot;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.RowGraph#rowStart(int)
+	 */
+	@Override
+	public long rowStart(int index) {
+		build();
+		return offsets[index];
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.RowGraph#rowEnd(int)
+	 */
+	@Override
+	public long rowEnd(int index) {
+		build();
+		return offsets[index + 1];
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.RowGraph#target(long)
+	 */
+	@Override
+	public int target(long position) {
+		return targets[(int) position];
+	}
+
+	// Direct access to the rows for the algorithms in this package - the arrays are shared, not copied
+
+	int[] ids() {
+		build();
+		return vertexIds;
+	}
+
+	int[] offsets() {
+		build();
+		return offsets;
+	}
+
+	int[] targets() {
+		build();
+		return targets;
+	}
+
+	/*
+	 * Return the list of neighbours of node, an empty list if node doesn't belong to the graph
+	 */
+	public ArrayList<Integer> getNeighbour(Integer node) {
+		int index = indexOf(node);
+		ArrayList<Integer> toReturn = new ArrayList<Integer>();
+		if (index < 0) return toReturn;
+		for (int k = offsets[index]; k < offsets[index + 1]; k++) {
+			toReturn.add(vertexIds[targets[k]]);
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the set of vertexes in the graph in increasing order
+	 */
+	public Set<Integer> getVertices() {
+		build();
+		LinkedHashSet<Integer> toReturn = new LinkedHashSet<Integer>();
+		for (int id:vertexIds) {
+			toReturn.add(id);
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the total number of vertexes in the graph
+	 */
+	public int GetVertexesNumber() {
+		return vertexCount();
+	}
+
+	/*
+	 * Return the total number of edges in the graph
+	 */
+	public int GetEdgesNumber() {
+		return edgeCount();
+	}
+
+	/*
+	 * Return the transposed of the graph inverting the direction of each directed link
+	 */
+	public CSRGraph transposeGraph() {
+		build();
+		int n = vertexIds.length;
+		int[] offsetsT = new int[n + 1];
+		int[] targetsT = new int[targets.length];
+		for (int k = 0; k < targets.length; k++) {
+			offsetsT[targets[k] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			offsetsT[i + 1] += offsetsT[i];
+		}
+		int[] cursor = Arrays.copyOf(offsetsT, n);
+		for (int i = 0; i < n; i++) {
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				targetsT[cursor[targets[k]]++] = i;
+			}
+		}
+		return new CSRGraph(vertexIds, offsetsT, targetsT);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getEgonet(int)
+	 */
+	@Override
+	public Graph getEgonet(int center) {
+		return egonet(center, null, 0);
+	}
+
+	/*
+	 * Return the egonet centered at a given node keeping only the vertexes whose label is label (all if labels is null)
+	 */
+	CapGraph egonet(int center, int[] labels, int label) {
+		// return new graph with center, directly connected vertices and the edges between them
+		CapGraph egoGraph = new CapGraph();
+
+		int c = indexOf(center);
+		if (c < 0 || (labels != null && labels[c] != label)) {
+			// return null graph is center doesn't belong to graph
+			return egoGraph;
+		}
+
+		// the vertexes of the egonet as sorted indexes, searched by binary search instead of hashing their names, so
+		// that nothing proportional to the whole graph is allocated per egonet
+		int[] members = new int[offsets[c + 1] - offsets[c] + 1];
+		int n = 0;
+		members[n++] = c;
+		for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+			if (labels == null || labels[targets[k]] == label) {
+				members[n++] = targets[k];
+			}
+		}
+		Arrays.sort(members, 0, n);
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (distinct == 0 || members[distinct - 1] != members[i]) {
+				members[distinct++] = members[i];
+			}
+		}
+		// state of each member: 0 not added yet, 1 added, 2 its edges added too
+		int[] state = new int[distinct];
+		state[Arrays.binarySearch(members, 0, distinct, c)] = 1;
+		egoGraph.addVertex(center);
+		for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+			int m = Arrays.binarySearch(members, 0, distinct, targets[k]);
+			if (m >= 0 && state[m] == 0) {
+				state[m] = 1;
+				egoGraph.addVertex(vertexIds[targets[k]]);
+			}
+		}
+		for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+			int v = targets[k];
+			int m = Arrays.binarySearch(members, 0, distinct, v);
+			if (m < 0) continue;
+			egoGraph.addEdge(center, vertexIds[v]);
+			// add the edges of each neighbour only once even if it appears more than once in the center's row
+			if (state[m] != 1) continue;
+			state[m] = 2;
+			for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+				if (Arrays.binarySearch(members, 0, distinct, targets[j]) >= 0) {
+					egoGraph.addEdge(vertexIds[v], vertexIds[targets[j]]);
+				}
+			}
+		}
+		return egoGraph;
+	}
+
+	/*
+	 * Return the strongly connected components of the graph
+	 * Implemented as an iterative Tarjan's algorithm: a single DFS keeps explicit stacks of the vertexes being explored
+	 * (with the position reached in each one's row) and of the vertexes not assigned to a component yet, so it runs in
+	 * linear time without recursion whatever the length of the paths in the graph
+	 */
+	public Components stronglyConnectedComponents() {
+		long start = Metrics.start();
+		build();
+		int n = vertexIds.length;
+		// DFS discovery order of each vertex (-1 if not discovered) and lowest discovery order reachable from its subtree
+		int[] order = new int[n];
+		int[] low = new int[n];
+		Arrays.fill(order, -1);
+		// DFS stack with the position reached in each vertex's row
+		int[] dfsStack = new int[n];
+		int[] cursor = new int[n];
+		// vertexes discovered and not assigned to a component yet
+		int[] pending = new int[n];
+		boolean[] isPending = new boolean[n];
+		int[] labels = new int[n];
+		int discovered = 0;
+		int components = 0;
+
+		for (int s = 0; s < n; s++) {
+			if (order[s] >= 0) continue;
+			int top = 0;
+			int pendingTop = 0;
+			dfsStack[0] = s;
+			cursor[0] = offsets[s];
+			order[s] = low[s] = discovered++;
+			pending[pendingTop++] = s;
+			isPending[s] = true;
+
+			while (top >= 0) {
+				int v = dfsStack[top];
+				if (cursor[top] < offsets[v + 1]) {
+					int w = targets[cursor[top]++];
+					if (order[w] < 0) {
+						// explore w
+						order[w] = low[w] = discovered++;
+						pending[pendingTop++] = w;
+						isPending[w] = true;
+						dfsStack[++top] = w;
+						cursor[top] = offsets[w];
+					} else if (isPending[w]) {
+						low[v] = Math.min(low[v], order[w]);
+					}
+				} else {
+					// v is explored: if it is the first vertex discovered in its component, the component is made of
+					// the vertexes pending after it
+					if (low[v] == order[v]) {
+						int w;
+						do {
+							w = pending[--pendingTop];
+							isPending[w] = false;
+							labels[w] = components;
+						} while (w != v);
+						components++;
+					}
+					top--;
+					if (top >= 0) {
+						int parent = dfsStack[top];
+						low[parent] = Math.min(low[parent], low[v]);
+					}
+				}
+			}
+		}
+		countVisit(start);
+		return new Components(this, labels, components);
+	}
+
+	/*
+	 * Return the connected component with more edges (the first one found in case of ties) as a view on the graph
+	 * The components are labelled with a single BFS pass that counts the edges of each component while exploring it
+	 * and only remembers the best one, so no memory is allocated per component
+	 */
+	public SubgraphView largestConnectedComponent() {
+		long start = Metrics.start();
+		build();
+		int n = vertexIds.length;
+		int[] labels = new int[n];
+		int[] queue = new int[n];
+		Arrays.fill(labels, -1);
+		int components = 0;
+		int best = -1;
+		long bestEdges = -1;
+		for (int s = 0; s < n; s++) {
+			if (labels[s] >= 0) continue;
+			int head = 0;
+			int tail = 0;
+			long edges = 0;
+			queue[tail++] = s;
+			labels[s] = components;
+			while (head < tail) {
+				int v = queue[head++];
+				for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+					int w = targets[k];
+					if (labels[w] < 0) {
+						labels[w] = components;
+						queue[tail++] = w;
+					}
+					if (labels[w] == components) {
+						edges++;
+					}
+				}
+			}
+			if (edges > bestEdges) {
+				bestEdges = edges;
+				best = components;
+			}
+			components++;
+		}
+		countVisit(start);
+		return new Components(this, labels, components).view(best);
+	}
+
+	/*
+	 * Return the connected components of the graph following the edges as in CapGraph.getCCs
+	 */
+	public Components connectedComponents() {
+		build();
+		int n = vertexIds.length;
+		int[] labels = new int[n];
+		int components = RowGraph.labelComponents(this, labels, new int[n]);
+		return new Components(this, labels, components);
+	}
+
+	private void countVisit(long start) {
+		// record a components search started at start, that visited every vertex and traversed every edge
+		Metrics.stop(Metrics.Phase.COMPONENTS, start);
+		Metrics.count(Metrics.Counter.NODES_VISITED, vertexIds.length);
+		Metrics.count(Metrics.Counter.EDGES_TRAVERSED, targets.length);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getSCCs()
+	 */
+	@Override
+	public List<Graph> getSCCs() {
+		return new ArrayList<Graph>(stronglyConnectedComponents().toGraphs());
+	}
+
+	/*
+	 * Return a list of subgraphs connected components in the graph
+	 */
+	public LinkedList<CapGraph> getCCs() {
+		return connectedComponents().toGraphs();
+	}
+
+	/*
+	 * Return a modifiable copy of the graph
+	 */
+	public CapGraph toCapGraph() {
+		build();
+		CapGraph copyGraph = new CapGraph();
+		for (int id:vertexIds) {
+			copyGraph.addVertex(id);
+		}
+		for (int i = 0; i < vertexIds.length; i++) {
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				copyGraph.addEdge(vertexIds[i], vertexIds[targets[k]]);
+			}
+		}
+		return copyGraph;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#exportGraph()
+	 */
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		build();
+		HashMap<Integer, HashSet<Integer>> toReturn = new HashMap<Integer, HashSet<Integer>>();
+		for (int i = 0; i < vertexIds.length; i++) {
+			HashSet<Integer> neighbours = new HashSet<Integer>();
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				neighbours.add(vertexIds[targets[k]]);
+			}
+			toReturn.put(vertexIds[i], neighbours);
+		}
+		return toReturn;
+	}
+
+	public String toString() {
+		build();
+		StringBuilder toReturn = new StringBuilder();
+		for (int i = 0; i < vertexIds.length; i++) {
+			toReturn.append(vertexIds[i]).append(" -> ").append(getNeighbour(vertexIds[i])).append('\n');
+		}
+		return toReturn.toString();
+	}
+}
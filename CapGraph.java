@@ -3,14 +3,22 @@
  */
 package graph;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -18,12 +26,52 @@ import java.util.Random;
  * 
  * The CapGraph class implement the Graph's interface providing support of a graph data structure and method to manipulate it
  * 
+ * The neighbours of each node are stored in an AdjacencyRow: edges are removed and looked up in O(1) expected time, also on
+ * the rows of hub nodes, and the order of the neighbours of a node changes when one of its edges is removed.
+ * Many edits are applied at once by applyMutations.
+ * 
+ * The connected components are kept up to date by addEdge and removeEdge once they have been asked for (componentCount,
+ * componentOf, componentStats). Adding an edge between two components relabels the smaller one. Removing the second
+ * direction of an edge searches from both its end points in turn, one node per side, until the searches meet or one
+ * of them runs out of nodes, marking the nodes reached on their rows instead of allocating sets. When the edge was a
+ * bridge each side explores at most as many nodes as the smaller part holds; when it was not, the searches run until
+ * they meet, which on a long cycle can be most of the component: a removal is not constant time, and many removals
+ * are cheaper through applyMutations, which recounts the components once.
+ * 
  * *
  */
-public class CapGraph implements Graph {
+public class CapGraph implements BulkGraph {
 	
 	// The class's graph is stored in term of a source node and a list of its neighbours 
-	private HashMap<Integer, ArrayList<Integer>> adjGraph = new HashMap<Integer, ArrayList<Integer>>();	
+	private HashMap<Integer, AdjacencyRow> adjGraph = new HashMap<Integer, AdjacencyRow>();	
+
+	// Connected component label of each node, number of nodes and of edges (sum of the row sizes) per label, maintained
+	// as edges are added and removed once componentCount, componentOf or componentStats has been called (null until then
+	// or after a change that requires a recount)
+	// The connected components are tracked assuming an undirected graph, where each edge is stored in both directions
+	private HashMap<Integer, Integer> componentLabels = null;
+	private HashMap<Integer, Integer> componentSizes = null;
+	private HashMap<Integer, Long> componentVolumes = null;
+	private int nextComponentLabel = 0;
+	// Working state of splitComponents, reused by every removal: the rows reached from each side of the removed edge
+	// are stamped with the side's stamp (see AdjacencyRow.stamp) and the nodes reached are queued in the side's array
+	private int searchStamp = 0;
+	private final SearchSide searchFrom = new SearchSide();
+	private final SearchSide searchTo = new SearchSide();
+
+	// Egonets returned by getEgonets, kept in access order and evicted from the least recently used once more than
+	// egonetCacheSize are stored. An egonet is dropped when an edge is added or removed on its center or on one of its
+	// neighbours (the graph being undirected, these are the only egonets the edge belongs to)
+	public static final int DEFAULT_EGONET_CACHE_SIZE = 1024;
+	private int egonetCacheSize = DEFAULT_EGONET_CACHE_SIZE;
+	private final LinkedHashMap<Integer, Egonet> egonetCache = new LinkedHashMap<Integer, Egonet>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Egonet> eldest) {
+			return size() > egonetCacheSize;
+		}
+	};
 
 	/* (non-Javadoc)
 	 * @see graph.Graph#addVertex(int)
@@ -32,7 +80,22 @@ public class CapGraph implements Graph {
 	 */
 	@Override
 	public void addVertex(int node) {
-		adjGraph.put(node, new ArrayList<Integer>());		
+		if (adjGraph.containsKey(node)) {
+			// the node loses its edges
+			invalidateEgonets(node, node);
+		}
+		if (componentLabels != null) {
+			if (adjGraph.containsKey(node)) {
+				// the node loses its edges, recount the components when needed
+				componentLabels = null;
+			} else {
+				// the new node is a component by itself
+				componentLabels.put(node, nextComponentLabel);
+				componentVolumes.put(nextComponentLabel, 0L);
+				componentSizes.put(nextComponentLabel++, 1);
+			}
+		}
+		adjGraph.put(node, new AdjacencyRow());		
 	}
 
 	/* (non-Javadoc)
@@ -42,25 +105,310 @@ public class CapGraph implements Graph {
 	 */
 	@Override
 	public void addEdge(int fromNode, int toNode) {
+		if (componentLabels != null) {
+			joinComponents(fromNode, toNode);
+		}
+		invalidateEgonets(fromNode, toNode);
 		adjGraph.get(fromNode).add(toNode);
+		if (componentLabels != null) {
+			componentVolumes.merge(componentLabels.get(fromNode), 1L, Long::sum);
+		}
 
 	}
 
+	/* (non-Javadoc)
+	 * @see graph.BulkGraph#addEdges(int[], int)
+	 * 
+	 * Add count edges stored as couples in edges, adding their nodes to the class's graph when missing
+	 */
+	@Override
+	public void addEdges(int[] edges, int count) {
+		// recount the components when needed instead of updating them edge by edge
+		componentLabels = null;
+		egonetCache.clear();
+		for (int i=0;i<count;i++) {
+			int fromNode=edges[2*i];
+			int toNode=edges[2*i+1];
+			AdjacencyRow neighbours=adjGraph.get(fromNode);
+			if (neighbours==null) {
+				neighbours=new AdjacencyRow();
+				adjGraph.put(fromNode, neighbours);
+			}
+			if (!adjGraph.containsKey(toNode)) {
+				adjGraph.put(toNode, new AdjacencyRow());
+			}
+			neighbours.add(toNode);
+		}
+	}
+
 	/*
-	 * Remove the edge between from fromNode to toNode from the class's graph
+	 * Remove the edge between from fromNode to toNode from the class's graph, in O(1) expected time
 	 */
 
 	public void removeEdge(int fromNode, int toNode) {
 		if (adjGraph.containsKey(fromNode)) {
-			adjGraph.get(fromNode).remove((Integer)toNode);
+			invalidateEgonets(fromNode, toNode);
+			if (adjGraph.get(fromNode).remove(toNode) && componentLabels != null) {
+				componentVolumes.merge(componentLabels.get(fromNode), -1L, Long::sum);
+				splitComponents(fromNode, toNode);
+			}
 		}
 		
 	}
 
+	/*
+	 * Return true if the class's graph has an edge from fromNode to toNode, in O(1) expected time
+	 */
+	public boolean hasEdge(int fromNode, int toNode) {
+		AdjacencyRow neighbours=adjGraph.get(fromNode);
+		return neighbours!=null && neighbours.contains(toNode);
+	}
+
+	/*
+	 * Apply a batch of edits to the class's graph: first remove the edges in removes, then add the edges in adds, both
+	 * stored as couples as in addEdges (edges[2*i] is the "from" node and edges[2*i+1] the "to" node of the i-th edge)
+	 * The end points of the edges added are added as nodes when missing; edges to remove that don't belong to the
+	 * graph are ignored
+	 * Output value: the number of edges removed
+	 */
+	public int applyMutations(int[] adds, int[] removes) {
+		// the components and the cached egonets are dropped once for the whole batch instead of being updated edge by
+		// edge, and each row grows once to hold all the edges added to it
+		componentLabels = null;
+		egonetCache.clear();
+
+		int removed=0;
+		for (int i=0;i+1<removes.length;i+=2) {
+			AdjacencyRow neighbours=adjGraph.get(removes[i]);
+			if (neighbours!=null && neighbours.remove(removes[i+1])) {
+				removed++;
+			}
+		}
+
+		HashMap<Integer, Integer> added=new HashMap<Integer, Integer>();
+		for (int i=0;i+1<adds.length;i+=2) {
+			added.merge(adds[i], 1, Integer::sum);
+		}
+		for (Map.Entry<Integer, Integer> entry:added.entrySet()) {
+			AdjacencyRow neighbours=adjGraph.get(entry.getKey());
+			if (neighbours==null) {
+				adjGraph.put(entry.getKey(), new AdjacencyRow(entry.getValue()));
+			} else {
+				neighbours.ensureCapacity(neighbours.size()+entry.getValue());
+			}
+		}
+		for (int i=0;i+1<adds.length;i+=2) {
+			if (!adjGraph.containsKey(adds[i+1])) {
+				adjGraph.put(adds[i+1], new AdjacencyRow());
+			}
+			adjGraph.get(adds[i]).add(adds[i+1]);
+		}
+		return removed;
+	}
+
+	/*
+	 * Return the number of connected components in the class's graph
+	 * The first call labels all nodes with a BFS, following calls are answered from the labels maintained by addEdge and removeEdge
+	 */
+	public int componentCount() {
+		if (componentLabels == null) {
+			labelComponents();
+		}
+		return componentSizes.size();
+	}
+
+	/*
+	 * Return the statistics of the connected components of the class's graph, in O(#components) from the labels
+	 * maintained by addEdge and removeEdge, without copying the graph - the components are numbered in no particular
+	 * order and the statistics don't refer to a Components partition
+	 */
+	public ComponentStats componentStats() {
+		if (componentLabels == null) {
+			labelComponents();
+		}
+		int[] nodes = new int[componentSizes.size()];
+		long[] volumes = new long[nodes.length];
+		int c = 0;
+		for (Map.Entry<Integer, Integer> component:componentSizes.entrySet()) {
+			nodes[c] = component.getValue();
+			volumes[c++] = componentVolumes.get(component.getKey());
+		}
+		return new ComponentStats(nodes, volumes);
+	}
+
+	/*
+	 * Return the label of the connected component of node (equal labels mean same component), -1 if node doesn't belong to the graph
+	 */
+	public int componentOf(int node) {
+		if (componentLabels == null) {
+			labelComponents();
+		}
+		Integer label = componentLabels.get(node);
+		return label == null ? -1 : label;
+	}
+
+	private void labelComponents() {
+		// label each node with its connected component exploring the graph with a BFS from each node not labelled yet
+		componentLabels = new HashMap<Integer, Integer>();
+		componentSizes = new HashMap<Integer, Integer>();
+		componentVolumes = new HashMap<Integer, Long>();
+		nextComponentLabel = 0;
+		ArrayDeque<Integer> nodesToExplore = new ArrayDeque<Integer>();
+		for (Integer node:adjGraph.keySet()) {
+			if (!componentLabels.containsKey(node)) {
+				int size = relabel(node, nextComponentLabel, nodesToExplore);
+				componentSizes.put(nextComponentLabel++, size);
+			}
+		}
+	}
+
+	private int relabel(Integer node, int label, ArrayDeque<Integer> nodesToExplore) {
+		// assign label to all nodes reachable from node that don't have it yet and return their number, adding their
+		// edges to the volume of label while they are explored
+		int relabelled = 1;
+		long volume = 0;
+		componentLabels.put(node, label);
+		nodesToExplore.add(node);
+		while (!nodesToExplore.isEmpty()) {
+			AdjacencyRow neighbours = adjGraph.get(nodesToExplore.poll());
+			volume += neighbours.size();
+			for (int k = 0; k < neighbours.size(); k++) {
+				Integer n = neighbours.get(k);
+				Integer current = componentLabels.put(n, label);
+				if (current == null || current != label) {
+					relabelled++;
+					nodesToExplore.add(n);
+				}
+			}
+		}
+		componentVolumes.merge(label, volume, Long::sum);
+		return relabelled;
+	}
+
+	private void joinComponents(int fromNode, int toNode) {
+		// called before adding the edge fromNode -> toNode: merge the two components relabelling the smaller one
+		Integer fromLabel = componentLabels.get(fromNode);
+		Integer toLabel = componentLabels.get(toNode);
+		if (fromLabel == null || toLabel == null) {
+			// an end point was not added as node, recount the components when needed
+			componentLabels = null;
+			return;
+		}
+		if (fromLabel.equals(toLabel)) return;
+
+		int fromSize = componentSizes.get(fromLabel);
+		int toSize = componentSizes.get(toLabel);
+		int keptLabel = fromSize >= toSize ? fromLabel : toLabel;
+		int droppedLabel = fromSize >= toSize ? toLabel : fromLabel;
+		relabel(fromSize >= toSize ? toNode : fromNode, keptLabel, new ArrayDeque<Integer>());
+		componentSizes.remove(droppedLabel);
+		componentSizes.put(keptLabel, fromSize + toSize);
+		componentVolumes.remove(droppedLabel);
+	}
+
+	private void splitComponents(int fromNode, int toNode) {
+		// called after removing one edge fromNode -> toNode: if the two nodes are no more connected, give a new label to
+		// the nodes that remained with one of them
+
+		// The nodes are still connected if another edge joins them, in any direction, as the reverse edge of an undirected
+		// graph that is removed only after this one
+		if (fromNode == toNode || adjGraph.get(fromNode).contains(toNode)
+				|| (adjGraph.containsKey(toNode) && adjGraph.get(toNode).contains(fromNode))) {
+			return;
+		}
+
+		// Algorithm implemented:
+		//		Explore the graph from both nodes at the same time, one node per side in turn
+		//		  If a side reaches a node already reached by the other side, the nodes are still connected
+		//		  If a side has no more nodes to explore, it has reached its whole component: give it a new label
+		// Each side stops as soon as the smaller of the two parts is known, so the cost depends on the smaller part
+		// The visited nodes are marked by stamping their rows and queued in int arrays kept between removals, so a
+		// removal allocates nothing once the arrays have grown to the largest part explored
+		if (searchStamp > Integer.MAX_VALUE - 2) {
+			// the stamps wrapped around: clear the old ones
+			for (AdjacencyRow row:adjGraph.values()) {
+				row.stamp = 0;
+			}
+			searchStamp = 0;
+		}
+		searchStamp += 2;
+		searchFrom.start(fromNode, searchStamp);
+		searchTo.start(toNode, searchStamp + 1);
+		adjGraph.get(fromNode).stamp = searchFrom.stamp;
+		adjGraph.get(toNode).stamp = searchTo.stamp;
+
+		while (true) {
+			if (searchFrom.head == searchFrom.tail) {
+				separate(searchFrom, componentLabels.get(fromNode));
+				return;
+			}
+			if (exploreNext(searchFrom, searchTo.stamp)) return;
+			if (searchTo.head == searchTo.tail) {
+				separate(searchTo, componentLabels.get(toNode));
+				return;
+			}
+			if (exploreNext(searchTo, searchFrom.stamp)) return;
+		}
+	}
+
+	/*
+	 * One side of the search of splitComponents: the nodes reached, queue[0] to queue[tail-1], the ones from head on
+	 * being still to explore, and the stamp of their rows
+	 */
+	private static class SearchSide {
+		int[] queue = new int[16];
+		int head;
+		int tail;
+		int stamp;
+
+		void start(int node, int stamp) {
+			this.stamp = stamp;
+			queue[0] = node;
+			head = 0;
+			tail = 1;
+		}
+
+		void add(int node) {
+			if (tail == queue.length) {
+				queue = Arrays.copyOf(queue, 2 * queue.length);
+			}
+			queue[tail++] = node;
+		}
+	}
+
+	private boolean exploreNext(SearchSide side, int otherStamp) {
+		// explore the neighbours of the next node of side, return true if one was already reached by the other side
+		AdjacencyRow neighbours = adjGraph.get(side.queue[side.head++]);
+		for (int k = 0; k < neighbours.size(); k++) {
+			int n = neighbours.get(k);
+			AdjacencyRow row = adjGraph.get(n);
+			if (row.stamp == otherStamp) return true;
+			if (row.stamp != side.stamp) {
+				row.stamp = side.stamp;
+				side.add(n);
+			}
+		}
+		return false;
+	}
+
+	private void separate(SearchSide side, int oldLabel) {
+		// move the nodes reached by side from the component oldLabel to a new component, with their edges
+		int newLabel = nextComponentLabel++;
+		long volume = 0;
+		for (int i = 0; i < side.tail; i++) {
+			componentLabels.put(side.queue[i], newLabel);
+			volume += adjGraph.get(side.queue[i]).size();
+		}
+		componentSizes.put(newLabel, side.tail);
+		componentSizes.put(oldLabel, componentSizes.get(oldLabel) - side.tail);
+		componentVolumes.put(newLabel, volume);
+		componentVolumes.merge(oldLabel, -volume, Long::sum);
+	}
+
 	public String toString() {
 		
 		for (Integer v:adjGraph.keySet()) {
-			System.out.println(v + " -> " + adjGraph.get(v));
+			System.out.println(v + " -> " + getNeighbour(v));
 		}
 		
 		return null;
@@ -87,11 +435,13 @@ public class CapGraph implements Graph {
 		HashSet<Integer> checkSet = new HashSet<Integer>();
 
 		checkSet.add(center);
-		for (Integer n:adjGraph.get(center)) {
-			checkSet.add(n);
+		AdjacencyRow centerNeighbours=adjGraph.get(center);
+		for (int k=0;k<centerNeighbours.size();k++) {
+			checkSet.add(centerNeighbours.get(k));
 		}		
 		
-		for (Integer v_i:adjGraph.get(center)) {
+		for (int k=0;k<centerNeighbours.size();k++) {
+			Integer v_i=centerNeighbours.get(k);
 
 			// add edges between center and directly connected vertexes
 			egoGraph.addEdge(center, v_i); 
@@ -100,9 +450,10 @@ public class CapGraph implements Graph {
 			
 			// and edges between them and the center (part of checkSet)
 			
-			for (Integer n:adjGraph.get(v_i)) {
-				if (checkSet.contains(n)) {
-					egoGraph.addEdge(v_i, n);
+			AdjacencyRow neighbours=adjGraph.get(v_i);
+			for (int j=0;j<neighbours.size();j++) {
+				if (checkSet.contains(neighbours.get(j))) {
+					egoGraph.addEdge(v_i, neighbours.get(j));
 				}
 			}
 		}
@@ -110,6 +461,102 @@ public class CapGraph implements Graph {
 		return egoGraph;
 	}
 
+	/*
+	 * Return the egonets of the vertexes in centers, computed in parallel on the given number of threads and stored
+	 * as Egonet instead of a graph - centers not in the graph are left out of the returned map
+	 * Egonets found in the cache are not computed again, the others are added to it
+	 * The graph must not be changed by other threads during the call
+	 */
+	public Map<Integer, Egonet> getEgonets(int[] centers, int threads) {
+		Map<Integer, Egonet> toReturn = new HashMap<Integer, Egonet>();
+
+		// look up the cache first and collect the centers left to compute, once each
+		int[] missing = new int[centers.length];
+		int missingNumber = 0;
+		for (int center:centers) {
+			if (toReturn.containsKey(center) || !adjGraph.containsKey(center)) continue;
+			Egonet cached = egonetCache.get(center);
+			toReturn.put(center, cached);
+			if (cached == null) {
+				missing[missingNumber++] = center;
+			}
+		}
+		if (missingNumber == 0) {
+			return toReturn;
+		}
+
+		// the egonets are computed on the live rows, which the workers only read: no copy of the graph is needed
+		Egonet[] computed = new Egonet[missingNumber];
+		int last = missingNumber;
+		if (threads <= 1 || missingNumber < 2) {
+			for (int i = 0; i < missingNumber; i++) {
+				computed[i] = Egonet.of(this, missing[i]);
+			}
+		} else {
+			// each worker takes the next center not processed yet
+			AtomicInteger nextCenter = new AtomicInteger();
+			ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, missingNumber));
+			try {
+				List<Future<?>> workers = new ArrayList<Future<?>>();
+				for (int t = 0; t < Math.min(threads, missingNumber); t++) {
+					workers.add(pool.submit(() -> {
+						for (int i = nextCenter.getAndIncrement(); i < last; i = nextCenter.getAndIncrement()) {
+							computed[i] = Egonet.of(this, missing[i]);
+						}
+					}));
+				}
+				for (Future<?> f : workers) {
+					f.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Egonet computation interrupted", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Egonet computation failed", e.getCause());
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		for (Egonet egonet:computed) {
+			toReturn.put(egonet.getCenter(), egonet);
+			egonetCache.put(egonet.getCenter(), egonet);
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the egonets of the vertexes in centers on as many threads as the available processors
+	 */
+	public Map<Integer, Egonet> getEgonets(int[] centers) {
+		return getEgonets(centers, Runtime.getRuntime().availableProcessors());
+	}
+
+	/*
+	 * Set the maximum number of egonets kept in the cache of getEgonets, 0 disables the cache
+	 */
+	public void setEgonetCacheSize(int size) {
+		egonetCacheSize = Math.max(0, size);
+		if (egonetCache.size() > egonetCacheSize) {
+			egonetCache.clear();
+		}
+	}
+
+	private void invalidateEgonets(int fromNode, int toNode) {
+		// drop from the cache the egonets an edge between fromNode and toNode belongs to: the ones centered at the
+		// two nodes and at their neighbours
+		if (egonetCache.isEmpty()) return;
+		for (int node:new int[] {fromNode, toNode}) {
+			egonetCache.remove(node);
+			AdjacencyRow neighbours = adjGraph.get(node);
+			if (neighbours != null) {
+				for (int k = 0; k < neighbours.size(); k++) {
+					egonetCache.remove(neighbours.get(k));
+				}
+			}
+		}
+	}
+
 	/*
 	 * Return the transposed of the class's graph inverting the direction of each directed link in the original graph
 	 */
@@ -122,8 +569,9 @@ public class CapGraph implements Graph {
 		}
 		
 		for (Integer From:adjGraph.keySet()) {
-			for (Integer To: adjGraph.get(From)) {
-				adjGraphT.addEdge(To, From);
+			AdjacencyRow neighbours = adjGraph.get(From);
+			for (int k = 0; k < neighbours.size(); k++) {
+				adjGraphT.addEdge(neighbours.get(k), From);
 			}
 		}
 		return adjGraphT;
@@ -144,9 +592,23 @@ public class CapGraph implements Graph {
 	}
 
 	/*
-	 * Return the list of neighbor of node
+	 * Return a copy of the list of neighbor of node, as the other graphs do, so that it can be iterated while edges
+	 * are removed - null if node doesn't belong to the graph. Internal readers use the row itself (neighbours)
 	 */
 	public ArrayList<Integer> getNeighbour(Integer node){
+		AdjacencyRow neighbours = adjGraph.get(node);
+		if (neighbours == null) return null;
+		ArrayList<Integer> toReturn = new ArrayList<Integer>(neighbours.size());
+		for (int k = 0; k < neighbours.size(); k++) {
+			toReturn.add(neighbours.get(k));
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the row of neighbours of node, to be read without copying it - null if node doesn't belong to the graph
+	 */
+	AdjacencyRow neighbours(int node){
 		return adjGraph.get(node);
 	}
 
@@ -173,10 +635,10 @@ public class CapGraph implements Graph {
 	public Integer getOneNeighbor(Integer node){
 		Random randomGenerator = new Random();
 
-		Object[] neighbours =adjGraph.get(node).toArray();
-		//System.out.println("Neigh lenght "+ neighbours.length);
+		AdjacencyRow neighbours =adjGraph.get(node);
+		//System.out.println("Neigh lenght "+ neighbours.size());
 		
-		return (Integer)neighbours[randomGenerator.nextInt(neighbours.length)];		
+		return neighbours.get(randomGenerator.nextInt(neighbours.size()));		
 	}
 
 	/*
@@ -184,39 +646,31 @@ public class CapGraph implements Graph {
 	 */	
 	
 	public void mergeVertexes(Integer fromNode, Integer toNode){
+		// recount the components when needed
+		componentLabels = null;
+		egonetCache.clear();
 
 		// remove from fromNode's neighbor list any reference to toNode - this delete edges between these two nodes
-		for (Iterator<Integer> iterator = adjGraph.get(fromNode).iterator(); iterator.hasNext();){
-				Integer i = iterator.next();
-				if(i.equals(toNode)) {
-					iterator.remove();
-				}			
-			}
+		AdjacencyRow fromNeighbours = adjGraph.get(fromNode);
+		fromNeighbours.removeAll(toNode);
 		
 		// remove from toNode's neighbor list any reference to fromNode - this delete edges between these two nodes		
-		for (Iterator<Integer> iterator = adjGraph.get(toNode).iterator(); iterator.hasNext();){
-				Integer i = iterator.next();
-				if(i.equals(fromNode)) {
-					iterator.remove();
-				}				
-			}
+		AdjacencyRow toNeighbours = adjGraph.get(toNode);
+		toNeighbours.removeAll(fromNode);
 		
 		// add all neighbors from toNode to fromNode
-		adjGraph.get(fromNode).addAll(adjGraph.get(toNode));
+		fromNeighbours.ensureCapacity(fromNeighbours.size()+toNeighbours.size());
+		for (int k=0;k<toNeighbours.size();k++) {
+			fromNeighbours.add(toNeighbours.get(k));
+		}
 		// remove toNode form the class' graph
 		adjGraph.remove(toNode);
 		
 		// update throughout the graph any reference to toNode replacing them with fromNode
-		for (Integer node:adjGraph.keySet()) {
-			ArrayList<Integer> toAdd=new ArrayList<Integer>();
-			for (Iterator<Integer> iterator = adjGraph.get(node).iterator(); iterator.hasNext();){
-				Integer i = iterator.next();
-				if(i.equals(toNode)) {
-					iterator.remove();
-					toAdd.add(fromNode);
-				}
+		for (AdjacencyRow neighbours:adjGraph.values()) {
+			for (int replaced=neighbours.removeAll(toNode);replaced>0;replaced--) {
+				neighbours.add(fromNode);
 			}
-			adjGraph.get(node).addAll(toAdd);
 		}	
 	}
 
@@ -224,8 +678,7 @@ public class CapGraph implements Graph {
 	 * Return the total number of vertexes in the class's graph
 	 */	
 	public int GetVertexesNumber() {
-		if (adjGraph.isEmpty()) return 1;
-		return(adjGraph.keySet().size());
+		return(adjGraph.size());
 	}
 
 	/*
@@ -234,8 +687,8 @@ public class CapGraph implements Graph {
 	public int GetEdgesNumber() {
 		int toReturn=0;
 		
-		for (Integer v:adjGraph.keySet()) {
-			toReturn+=adjGraph.get(v).size();
+		for (AdjacencyRow neighbours:adjGraph.values()) {
+			toReturn+=neighbours.size();
 		}
 		
 		return(toReturn);
@@ -247,7 +700,9 @@ public class CapGraph implements Graph {
 	
 	public  void BFSVisit(CapGraph workingGraph, Integer v, HashSet<Integer> visited, LinkedList<Integer> finished){
 		visited.add(v);
-		for (Integer n:workingGraph.getNeighbour(v)) {
+		AdjacencyRow neighbours=workingGraph.neighbours(v);
+		for (int k=0;k<neighbours.size();k++) {
+			Integer n=neighbours.get(k);
 			if (!visited.contains(n)) {
 				BFSVisit(workingGraph, n, visited, finished);
 			}
@@ -268,10 +723,10 @@ public class CapGraph implements Graph {
 		for(Integer node:adjGraph.keySet()) {
 			// add node to the copy
 			copyGraph.addVertex(node);				
-			ArrayList<Integer> toNodes= adjGraph.get(node);
+			AdjacencyRow toNodes= adjGraph.get(node);
 			// iterate all neighbors and add them to the copy
-			for (Integer toNode:toNodes) {
-				copyGraph.addEdge(node, toNode);;
+			for (int k=0;k<toNodes.size();k++) {
+				copyGraph.addEdge(node, toNodes.get(k));
 			}			
 		}
 		return copyGraph;	
@@ -280,126 +735,40 @@ public class CapGraph implements Graph {
 	
 	/* (non-Javadoc)
 	 * @see graph.Graph#getSCCs()
+	 * 
+	 * The components are searched on a compressed copy of the class's graph with an iterative algorithm, so long paths
+	 * don't overflow the stack as the recursive BFSVisit would
 	 */
 	@Override
 	public List<Graph> getSCCs() {		
+		return new CSRGraph(this).getSCCs();
+	}
 
-		ArrayList<Graph> toReturn = new ArrayList<Graph>();
-		
-		// Store a copy of the class'graph to manipulate
-		CapGraph workingGraph= new CapGraph();
-		// Store a transposed representation of the working graph
-		CapGraph workingGraphT= new CapGraph();
-
-		workingGraph.adjGraph=adjGraph;
-		workingGraphT=workingGraph.transposeGraph();
-		
-		// retrieve the list of all vertexes in the class's graph
-		LinkedList<Integer> vertices = new LinkedList<>();
-		vertices.addAll(workingGraph.getVertices());
-
-		// call the BFS breath first search method to retrieve the all nodes in a graph component
-		LinkedList<Integer> finished=workingGraph.BFS(workingGraph, vertices);
-		
-		HashSet<Integer> visited=new HashSet<Integer>(); // new empty visited list
-		
-		while (!finished.isEmpty()) {
-			Integer v = finished.pop();
-			if (!visited.contains(v)) {
-				
-				LinkedList<Integer> finishedT = new LinkedList<Integer>();
-				BFSVisit(workingGraphT, v, visited, finishedT);
-				
-				// Populate a new Graph with the nodes discovered in the BFS
-				CapGraph newGraph = new CapGraph();
-				for (Integer n:finishedT) {
-					newGraph.addVertex(n);
-				}
-				// Populate the newly created Graph with the edges between nodes discovered
-				// this wasn't required in week1 assignment but they speak about subgraph
-
-				for (Integer from:newGraph.getVertices())
-				{
-					for (Integer to:workingGraph.getNeighbour(from)) {
-						if (finishedT.contains(to)) {
-							newGraph.addEdge(from, to);
-						}
-					}
-				}
-				
-				toReturn.add(newGraph);
-
-			}
-			
-		}
-		
-		
-		return toReturn;
+	/*
+	 * Return the strongly connected components of the class's graph as the component of each vertex of a compressed copy
+	 * of the graph, without building a subgraph per component
+	 */
+	public Components stronglyConnectedComponents() {
+		return new CSRGraph(this).stronglyConnectedComponents();
 	}
 
 	/*
 	 * Return a list of subgraphs connected components in the class's graph
 	 * This method is similar to getSCC but it doesn't implement recursion computation because of risk stackoverflow when dealing with 
 	 * really huge graph
+	 * Prefer connectedComponents when the subgraphs are only read, it doesn't copy them
 	 */	
 
 	public LinkedList<CapGraph> getCCs() {		
-		
-		LinkedList<CapGraph> GraphsToReturn = new LinkedList<CapGraph>();
-		
-		//Vertexes visited in the search
-		HashSet<Integer> visited=new HashSet<Integer>();
-
-		// Create a list to iterate on the vertexes	
-		LinkedList<Integer> vertexes = new LinkedList<>();
-		vertexes.addAll(adjGraph.keySet());
-
-		// explore all vertexes with a BFS search and create a new graph to return when ending exploring a graph's isolated component
-		while (!vertexes.isEmpty()) {
-			Integer node = vertexes.pop();
-
-			// if the node hasn't being visited before
-			if (!visited.contains(node)) {
-				// add to the list to explore
-				LinkedList<Integer> NodeToExplore=new LinkedList<Integer>();
-				// add to the queue to explore all neighbours of node
-				NodeToExplore.addAll(adjGraph.get(node));
-
-				// Store a list of nodes found in the BFS exploration 
-				LinkedList<Integer> BfsTree = new LinkedList<Integer>();	
-			
-				while(!NodeToExplore.isEmpty()) {
-					Integer exploringNode=NodeToExplore.pop();
-					if (!visited.contains(exploringNode)) {
-						visited.add(exploringNode);
-						NodeToExplore.addAll(adjGraph.get(exploringNode));
-						BfsTree.push(exploringNode);						
-					}					
-				}					
-								
-				// Populate a new Graph with the nodes discovered in the BFS
-				CapGraph newGraph = new CapGraph();
-				for (Integer n:BfsTree) {
-					newGraph.addVertex(n);
-				}
-				GraphsToReturn.add(newGraph);
-				
-				// Populate the newly created Graph with the edges between nodes discovered
-				HashSet<Integer> GraphNodes= new HashSet<Integer>();
-				GraphNodes.addAll(newGraph.getVertices());
-
-				for (Integer from:newGraph.getVertices())
-				{	
-					for (Integer to:adjGraph.get(from)) {
-						if (GraphNodes.contains(to)) {
-							newGraph.addEdge(from, to);
-						}
-					}			
-				}
-			}
-		}
-		
-		return GraphsToReturn;
+		return connectedComponents().toGraphs();
+	}
+
+	/*
+	 * Return the connected components of the class's graph as the component of each vertex of a compressed copy of the graph;
+	 * each component can be read through a view (Components.view, Components.largest) without copying its edges
+	 */
+	public Components connectedComponents() {
+		return new CSRGraph(this).connectedComponents();
 	}
 	
 	
@@ -413,8 +782,7 @@ public class CapGraph implements Graph {
 		
 		for (Integer n:adjGraph.keySet()) {
 						
-			toReturn.put(n, new HashSet<Integer>());
-			toReturn.get(n).addAll(adjGraph.get(n));
+			toReturn.put(n, new HashSet<Integer>(getNeighbour(n)));
 		}
 		
 		return toReturn;
@@ -0,0 +1,198 @@
+package graph;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The ComponentStats class measures the components of a Components partition in a single pass over the rows of the
+ * graph, without building a subgraph, so the health of the components can be logged after every edge removal:
+ *		nodes and edges of each component and its density (edges / edges of a full mesh)
+ *		volume of each component (sum of the degrees of its vertexes) and cut (edges toward other components)
+ *		conductance of each component: cut / min(volume, total volume - volume), 0 for an isolated component and
+ *		  low for a well separated community
+ *		modularity contribution of each component: in(c)/2m - (volume(c)/2m)^2, summing to the modularity of the
+ *		  partition (see Louvain)
+ *		distribution of the component sizes
+ * Arrays are allocated per component, O(#components) memory on top of the partition.
+ *
+ * The statistics of the connected components of a CapGraph are instead gathered while its components are labelled and
+ * kept up to date by its edge additions and removals (CapGraph.componentStats): they need no pass over the graph, so
+ * they can be logged after every edge removal. Connected components have no edges toward each other, so their cut
+ * and conductance are 0.
+ *
+ * The graph is assumed undirected (each edge stored in both directions) as the facebook's friend graph data set.
+ **/
+
+public class ComponentStats {
+
+	// the partition measured, null for the connected components of a CapGraph
+	private final Components components;
+	// number of vertexes of each component
+	private final int[] nodes;
+	// number of directed edges between vertexes of each component, toward other components, and from each component
+	private final long[] inside;
+	private final long[] cut;
+	private final long[] volume;
+	// number of directed edges of the graph
+	private final long totalVolume;
+
+	public ComponentStats(Components components) {
+		this.components = components;
+		int count = components.count();
+		this.nodes = new int[count];
+		this.inside = new long[count];
+		this.cut = new long[count];
+		this.volume = new long[count];
+
+		CSRGraph graph = components.getGraph();
+		int[] labels = components.labels();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		for (int v = 0; v < labels.length; v++) {
+			int c = labels[v];
+			nodes[c]++;
+			volume[c] += offsets[v + 1] - offsets[v];
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (labels[targets[k]] == c) {
+					inside[c]++;
+				}
+			}
+			cut[c] = volume[c] - inside[c];
+		}
+		this.totalVolume = graph.edgeCount();
+	}
+
+	/*
+	 * Measure connected components from their number of vertexes and the sum of the degrees of their vertexes
+	 */
+	ComponentStats(int[] nodes, long[] volume) {
+		this.components = null;
+		this.nodes = nodes;
+		this.inside = volume;
+		this.cut = new long[nodes.length];
+		this.volume = volume;
+		long total = 0;
+		for (long v:volume) {
+			total += v;
+		}
+		this.totalVolume = total;
+	}
+
+	/*
+	 * Return the partition measured, null if the statistics come from CapGraph.componentStats
+	 */
+	public Components getComponents() {
+		return components;
+	}
+
+	/*
+	 * Return the number of components
+	 */
+	public int count() {
+		return nodes.length;
+	}
+
+	/*
+	 * Return the number of vertexes of component
+	 */
+	public int nodes(int component) {
+		return nodes[component];
+	}
+
+	/*
+	 * Return the number of undirected edges between vertexes of component
+	 */
+	public long edges(int component) {
+		return inside[component] / 2;
+	}
+
+	/*
+	 * Return the number of undirected edges between component and the other components
+	 */
+	public long cut(int component) {
+		return cut[component];
+	}
+
+	/*
+	 * Return the sum of the degrees of the vertexes of component
+	 */
+	public long volume(int component) {
+		return volume[component];
+	}
+
+	/*
+	 * Return the edges of component divided by the edges of a full mesh of its vertexes, 1 for a single vertex
+	 */
+	public double density(int component) {
+		long n = nodes[component];
+		return n > 1 ? inside[component] / (double) (n * (n - 1)) : 1.0;
+	}
+
+	/*
+	 * Return the conductance of component, 0 if it has no edges toward other components
+	 */
+	public double conductance(int component) {
+		long outside = Math.min(volume[component], totalVolume - volume[component]);
+		return cut[component] == 0 || outside == 0 ? 0.0 : cut[component] / (double) outside;
+	}
+
+	/*
+	 * Return the share of the modularity of the partition due to component
+	 */
+	public double modularity(int component) {
+		if (totalVolume == 0) return 0.0;
+		double share = volume[component] / (double) totalVolume;
+		return inside[component] / (double) totalVolume - share * share;
+	}
+
+	/*
+	 * Return the modularity of the partition
+	 */
+	public double modularity() {
+		double toReturn = 0.0;
+		for (int c = 0; c < nodes.length; c++) {
+			toReturn += modularity(c);
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the component with more vertexes (the first one in case of ties), -1 if there are no components
+	 */
+	public int largest() {
+		int best = -1;
+		for (int c = 0; c < nodes.length; c++) {
+			if (best < 0 || nodes[c] > nodes[best]) {
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Return the number of components of each size, by increasing size
+	 */
+	public SortedMap<Integer, Integer> sizeDistribution() {
+		SortedMap<Integer, Integer> toReturn = new TreeMap<Integer, Integer>();
+		for (int n:nodes) {
+			toReturn.merge(n, 1, Integer::sum);
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return a one line summary of the partition
+	 */
+	public String toString() {
+		int largest = largest();
+		double conductance = 0.0;
+		for (int c = 0; c < nodes.length; c++) {
+			conductance += conductance(c);
+		}
+		return "components=" + nodes.length + " largest=" + (largest < 0 ? 0 : nodes[largest])
+				+ " modularity=" + modularity() + " average conductance="
+				+ (nodes.length == 0 ? 0.0 : conductance / nodes.length);
+	}
+}
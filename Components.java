@@ -0,0 +1,193 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The Components class stores a partition of the vertexes of a CSRGraph in components (connected, strongly
+ * connected, or communities as found by Louvain and LabelPropagation) as an array that gives the component of each
+ * vertex index, without copying the graph.
+ * Each component can be read through a SubgraphView, that filters the graph's rows on the fly, and materialized as
+ * CapGraph subgraphs only when a caller needs to modify them.
+ **/
+
+public class Components {
+
+	// the graph partitioned
+	private final CSRGraph graph;
+	// component of each vertex index, from 0 to count-1
+	private final int[] labels;
+	// number of components
+	private final int count;
+	// vertex indexes grouped by component: the vertexes of component c are members[memberOffsets[c]] ...
+	// members[memberOffsets[c+1]-1], built the first time they are needed
+	private int[] members = null;
+	private int[] memberOffsets = null;
+
+	Components(CSRGraph graph, int[] labels, int count) {
+		this.graph = graph;
+		this.labels = labels;
+		this.count = count;
+	}
+
+	/*
+	 * Return the partition of graph that puts each vertex index v in the community communities[v], a number from 0 to
+	 * the number of vertexes - 1 - the communities are renumbered from 0 in place, in order of first appearance
+	 */
+	public static Components of(CSRGraph graph, int[] communities) {
+		int n = graph.vertexCount();
+		if (communities.length != n) {
+			throw new IllegalArgumentException("Expected a community for each of the " + n + " vertexes");
+		}
+		int[] map = new int[n];
+		Arrays.fill(map, -1);
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			int c = communities[i];
+			if (c < 0 || c >= n) {
+				throw new IllegalArgumentException("Community " + c + " out of range");
+			}
+			if (map[c] < 0) {
+				map[c] = count++;
+			}
+			communities[i] = map[c];
+		}
+		return new Components(graph, communities, count);
+	}
+
+	public CSRGraph getGraph() {
+		return graph;
+	}
+
+	/*
+	 * Return the number of components
+	 */
+	public int count() {
+		return count;
+	}
+
+	/*
+	 * Return the component of the vertex named vertex, -1 if it doesn't belong to the graph
+	 */
+	public int componentOf(int vertex) {
+		int index = graph.indexOf(vertex);
+		return index < 0 ? -1 : labels[index];
+	}
+
+	/*
+	 * Return the component of each vertex index of the graph - the array is shared, not copied
+	 */
+	public int[] labels() {
+		return labels;
+	}
+
+	/*
+	 * Return the number of vertexes in each component
+	 */
+	public int[] sizes() {
+		int[] sizes = new int[count];
+		for (int label:labels) {
+			sizes[label]++;
+		}
+		return sizes;
+	}
+
+	/*
+	 * Return the number of edges between vertexes of the same component, for each component
+	 */
+	public long[] edgeCounts() {
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		long[] edges = new long[count];
+		for (int i = 0; i < labels.length; i++) {
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				if (labels[targets[k]] == labels[i]) {
+					edges[labels[i]]++;
+				}
+			}
+		}
+		return edges;
+	}
+
+	/*
+	 * Return a read only view of the subgraph induced by the vertexes of component
+	 */
+	public SubgraphView view(int component) {
+		return new SubgraphView(this, component);
+	}
+
+	/*
+	 * Return the component with more edges (the first one in case of ties) as a view, an empty view if there are no components
+	 */
+	public SubgraphView largest() {
+		long[] edges = edgeCounts();
+		int best = -1;
+		for (int c = 0; c < count; c++) {
+			if (best < 0 || edges[c] > edges[best]) {
+				best = c;
+			}
+		}
+		return view(best);
+	}
+
+	/*
+	 * Return the vertex indexes of component - the array is shared, the vertexes are in positions from
+	 * memberStart(component) to memberEnd(component)-1
+	 */
+	int[] members() {
+		if (members == null) {
+			// counting sort of the vertex indexes by component
+			int[] starts = new int[count + 1];
+			for (int label:labels) {
+				starts[label + 1]++;
+			}
+			for (int c = 0; c < count; c++) {
+				starts[c + 1] += starts[c];
+			}
+			int[] grouped = new int[labels.length];
+			int[] cursor = Arrays.copyOf(starts, count);
+			for (int i = 0; i < labels.length; i++) {
+				grouped[cursor[labels[i]]++] = i;
+			}
+			memberOffsets = starts;
+			members = grouped;
+		}
+		return members;
+	}
+
+	int memberStart(int component) {
+		members();
+		return component < 0 ? 0 : memberOffsets[component];
+	}
+
+	int memberEnd(int component) {
+		members();
+		return component < 0 ? 0 : memberOffsets[component + 1];
+	}
+
+	/*
+	 * Copy each component, with the edges between its vertexes, in a new CapGraph
+	 */
+	public LinkedList<CapGraph> toGraphs() {
+		int[] ids = graph.ids();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		CapGraph[] graphs = new CapGraph[count];
+		for (int c = 0; c < count; c++) {
+			graphs[c] = new CapGraph();
+		}
+		for (int i = 0; i < ids.length; i++) {
+			graphs[labels[i]].addVertex(ids[i]);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				if (labels[targets[k]] == labels[i]) {
+					graphs[labels[i]].addEdge(ids[i], ids[targets[k]]);
+				}
+			}
+		}
+		return new LinkedList<CapGraph>(Arrays.asList(graphs));
+	}
+}
@@ -0,0 +1,229 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The EdgeBetweenness class computes the exact edge betweenness of an undirected graph stored in a CSRGraph:
+ * the betweenness of an edge is the number of shortest paths between any couple of vertexes that traverse it,
+ * where a couple connected by k shortest paths credits 1/k to the edges of each of them.
+ *
+ * The computation follows Brandes' algorithm: for each source vertex a BFS counts the number of shortest paths
+ * (sigma) reaching each vertex, then a single backward pass in reverse BFS order accumulates the dependency of the
+ * source on each vertex and credits each edge toward the source with its share. A source costs O(V+E), so a full
+ * computation costs O(V*E) and, unlike following one BFS tree per source (see Flows), it does not depend on the
+ * order in which the neighbours are visited.
+ *
+ * The sources are independent: compute(threads) spreads them over a pool of workers, each one accumulating the
+ * scores in its own array, and sums the arrays at the end.
+ *
+ * The graph is assumed undirected (each edge stored in both directions) as the facebook's friend graph data set.
+ **/
+
+public class EdgeBetweenness {
+
+	// the graph investigated
+	private final CSRGraph graph;
+	// betweenness credited to each edge (position in the graph's targets), in the direction toward the source
+	private final double[] scores;
+	// relative difference under which two scores are considered equal, so that the edge returned by maxEdge
+	// doesn't depend on the order in which the partial scores of the workers are summed
+	private static final double TIE_TOLERANCE = 1e-9;
+
+	public EdgeBetweenness(CSRGraph graph) {
+		this.graph = graph;
+		this.scores = new double[graph.edgeCount()];
+	}
+
+	/*
+	 * Per source working arrays, allocated once and reset only on the vertexes reached by each BFS
+	 */
+	private static class Sweep {
+		final int[] distance;
+		final double[] sigma;
+		final double[] delta;
+		// vertexes in BFS order, used as queue in the forward pass and as stack in the backward pass
+		final int[] order;
+
+		Sweep(int n) {
+			distance = new int[n];
+			sigma = new double[n];
+			delta = new double[n];
+			order = new int[n];
+			Arrays.fill(distance, -1);
+		}
+	}
+
+	/*
+	 * Compute the betweenness of all edges taking each vertex as source
+	 */
+	public void compute() {
+		Arrays.fill(scores, 0.0);
+		Sweep sweep = new Sweep(graph.vertexCount());
+		for (int source = 0; source < graph.vertexCount(); source++) {
+			accumulate(source, sweep, scores);
+		}
+	}
+
+	/*
+	 * Compute the betweenness of all edges taking each vertex as source, on the given number of threads
+	 */
+	public void compute(int threads) {
+		int n = graph.vertexCount();
+		if (threads <= 1 || n < 2) {
+			compute();
+			return;
+		}
+
+		// each worker takes the next source not processed yet and accumulates in its own scores array
+		AtomicInteger nextSource = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<double[]>> partials = new ArrayList<Future<double[]>>();
+			for (int t = 0; t < threads; t++) {
+				partials.add(pool.submit(() -> {
+					Sweep sweep = new Sweep(n);
+					double[] partial = new double[scores.length];
+					for (int source = nextSource.getAndIncrement(); source < n; source = nextSource.getAndIncrement()) {
+						accumulate(source, sweep, partial);
+					}
+					return partial;
+				}));
+			}
+
+			Arrays.fill(scores, 0.0);
+			for (Future<double[]> f : partials) {
+				double[] partial = f.get();
+				for (int k = 0; k < scores.length; k++) {
+					scores[k] += partial[k];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Edge betweenness computation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Edge betweenness computation failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void accumulate(int source, Sweep sweep, double[] edgeScores) {
+		// Add to edgeScores the dependencies of source on each edge
+		// Input value: the index of the source vertex
+		// Input value: the working arrays, with distance set to -1 on every vertex
+		// Side effect: edgeScores updated, sweep arrays reset for the next source
+
+		// Algorithm implemented:
+		//		BFS from the source recording the distance of each vertex, the number of shortest paths reaching it
+		//		  (sum of the paths reaching its neighbours one step closer) and the order of discovery
+		//		For each vertex w in reverse BFS order
+		//		  For each neighbour v one step closer to the source
+		//		    credit the edge (w,v) with sigma[v]/sigma[w]*(1+delta[w]) and add the same amount to delta[v]
+
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int[] distance = sweep.distance;
+		double[] sigma = sweep.sigma;
+		double[] delta = sweep.delta;
+		int[] order = sweep.order;
+
+		long start = Metrics.start();
+		long edges = 0;
+		int head = 0;
+		int tail = 0;
+		order[tail++] = source;
+		distance[source] = 0;
+		sigma[source] = 1.0;
+		while (head < tail) {
+			int v = order[head++];
+			edges += offsets[v + 1] - offsets[v];
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				int w = targets[k];
+				if (distance[w] < 0) {
+					distance[w] = distance[v] + 1;
+					order[tail++] = w;
+				}
+				if (distance[w] == distance[v] + 1) {
+					sigma[w] += sigma[v];
+				}
+			}
+		}
+		Metrics.stop(Metrics.Phase.BFS_SWEEP, start);
+		Metrics.count(Metrics.Counter.NODES_VISITED, tail);
+		Metrics.count(Metrics.Counter.EDGES_TRAVERSED, edges);
+
+		start = Metrics.start();
+		for (int i = tail - 1; i >= 0; i--) {
+			int w = order[i];
+			double share = (1.0 + delta[w]) / sigma[w];
+			for (int k = offsets[w]; k < offsets[w + 1]; k++) {
+				int v = targets[k];
+				if (distance[v] == distance[w] - 1) {
+					double credit = sigma[v] * share;
+					edgeScores[k] += credit;
+					delta[v] += credit;
+				}
+			}
+		}
+		Metrics.stop(Metrics.Phase.FLOW_ALLOCATION, start);
+
+		// reset the entries touched by this source
+		for (int i = 0; i < tail; i++) {
+			int v = order[i];
+			distance[v] = -1;
+			sigma[v] = 0.0;
+			delta[v] = 0.0;
+		}
+	}
+
+	/*
+	 * Return the betweenness of the undirected edge between the vertexes named fromNode and toNode (0 if absent)
+	 */
+	public double getScore(int fromNode, int toNode) {
+		int from = graph.indexOf(fromNode);
+		int to = graph.indexOf(toNode);
+		if (from < 0 || to < 0) return 0.0;
+		return edgeScore(graph.slotOf(from, to)) + edgeScore(graph.slotOf(to, from));
+	}
+
+	private double edgeScore(int slot) {
+		return slot < 0 ? 0.0 : scores[slot];
+	}
+
+	/*
+	 * Return the undirected edge with the highest betweenness as the couple of its vertex names (lower name first),
+	 * or null if the graph has no edges. Ties are broken in favour of the lower vertex names.
+	 */
+	public int[] maxEdge() {
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int bestFrom = -1;
+		int bestTo = -1;
+		double bestScore = -1.0;
+
+		for (int u = 0; u < graph.vertexCount(); u++) {
+			for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+				int v = targets[k];
+				// consider each undirected edge once, from its lower index
+				if (v <= u) continue;
+				double score = scores[k] + edgeScore(graph.slotOf(v, u));
+				if (score > bestScore * (1.0 + TIE_TOLERANCE)) {
+					bestScore = score;
+					bestFrom = u;
+					bestTo = v;
+				}
+			}
+		}
+		if (bestFrom < 0) return null;
+		return new int[] {graph.idOf(bestFrom), graph.idOf(bestTo)};
+	}
+}
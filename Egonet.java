@@ -0,0 +1,137 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The Egonet class is a compact, immutable representation of the egonet centered at a vertex: the center, its
+ * neighbours and the edges between them, as returned by Graph.getEgonet but stored in compressed rows.
+ * The members are the sorted vertex integers and the row of each member holds the positions of its neighbours in
+ * members, so an egonet costs a few int arrays instead of a graph of boxed integers.
+ *
+ * Egonets are computed on the live rows of a CapGraph, without copying the graph: the row of each member is
+ * intersected with the sorted members by binary search, or, for the row of a hub much longer than the egonet, by
+ * looking each member up in the row's position index (see AdjacencyRow), instead of checking each neighbour in a hash
+ * set (see CapGraph.getEgonets).
+ **/
+
+public class Egonet {
+
+	private final int center;
+	// vertex integers of the members in increasing order
+	private final int[] members;
+	// neighbours of members[i] are members[targets[offsets[i]]] ... members[targets[offsets[i+1]-1]]
+	private final int[] offsets;
+	private final int[] targets;
+
+	Egonet(int center, int[] members, int[] offsets, int[] targets) {
+		this.center = center;
+		this.members = members;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	/*
+	 * Compute the egonet of the vertex center of graph, which must belong to it
+	 */
+	static Egonet of(CapGraph graph, int center) {
+		// members: the center and its neighbours in increasing order without duplicates
+		AdjacencyRow centerRow = graph.neighbours(center);
+		int[] members = new int[centerRow.size() + 1];
+		for (int k = 0; k < centerRow.size(); k++) {
+			members[k] = centerRow.get(k);
+		}
+		members[centerRow.size()] = center;
+		Arrays.sort(members);
+		int n = 0;
+		for (int i = 0; i < members.length; i++) {
+			if (n == 0 || members[n - 1] != members[i]) {
+				members[n++] = members[i];
+			}
+		}
+		members = Arrays.copyOf(members, n);
+
+		// the row of each member intersected with the members
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[16];
+		int edges = 0;
+		for (int i = 0; i < n; i++) {
+			AdjacencyRow row = graph.neighbours(members[i]);
+			if (row.size() > 8 * n) {
+				// row of a hub much longer than the egonet: look each member up in the row's position index
+				for (int m = 0; m < n; m++) {
+					int copies = row.count(members[m]);
+					if (edges + copies > targets.length) {
+						targets = Arrays.copyOf(targets, Math.max(2 * targets.length, edges + copies));
+					}
+					for (int c = 0; c < copies; c++) {
+						targets[edges++] = m;
+					}
+				}
+			} else {
+				// binary search each neighbour in the members, then sort the row as the rows are not ordered
+				if (edges + row.size() > targets.length) {
+					targets = Arrays.copyOf(targets, Math.max(2 * targets.length, edges + row.size()));
+				}
+				for (int k = 0; k < row.size(); k++) {
+					int position = Arrays.binarySearch(members, row.get(k));
+					if (position >= 0) {
+						targets[edges++] = position;
+					}
+				}
+				Arrays.sort(targets, offsets[i], edges);
+			}
+			offsets[i + 1] = edges;
+		}
+		return new Egonet(center, members, offsets, Arrays.copyOf(targets, edges));
+	}
+
+	public int getCenter() {
+		return center;
+	}
+
+	/*
+	 * Return the vertex integers of the egonet in increasing order - the array is shared, not copied
+	 */
+	public int[] getMembers() {
+		return members;
+	}
+
+	/*
+	 * Return true if the vertex named node belongs to the egonet
+	 */
+	public boolean contains(int node) {
+		return Arrays.binarySearch(members, node) >= 0;
+	}
+
+	/*
+	 * Return the number of vertexes in the egonet
+	 */
+	public int vertexCount() {
+		return members.length;
+	}
+
+	/*
+	 * Return the number of directed edges in the egonet
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/*
+	 * Copy the egonet in a CapGraph, as returned by Graph.getEgonet
+	 */
+	public CapGraph toGraph() {
+		CapGraph egoGraph = new CapGraph();
+		for (int v:members) {
+			egoGraph.addVertex(v);
+		}
+		for (int i = 0; i < members.length; i++) {
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				egoGraph.addEdge(members[i], members[targets[k]]);
+			}
+		}
+		return egoGraph;
+	}
+}
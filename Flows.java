@@ -1,122 +1,245 @@
 package graph;
 
-import java.awt.Point;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
 * @author Marco Umer marco.umer@gmail.com
-* 
-* The flow class is an helper class that stores a graph' representation in term of edges and allows to store flow units per edge	
-* A directed link is represented by a couple of Integer (x source and d destination) and well fit in the Point class (import java.awt.Point)
+*
+* The flow class is an helper class that stores a graph' representation in term of edges and allows to store flow units per edge
+* An undirected link is represented by a couple of int (lower and higher node) packed in a single long key, see edgeKey
+*
+* Flow units are counted in an open addressing hash table of primitive keys and counters, so allocating a flow unit
+* doesn't allocate any object, and the edge with more flow units (the lowest key among ties) is tracked while counting
+* so moreFlow is O(1).
 *
 **/
 
 public class Flows {
-		
-	// Flows from any source to destination nodes are recorded in a HashMap flowLinks using a Point as key and a Integer value as number of flow units
-	// as a key and Integer to record the number of flows traversing the link
-	private HashMap<Point, Integer> flowLinks = new HashMap<Point, Integer>();      
 
-	
+	// returned by moreFlow when no flow has been allocated
+	public static final long NO_EDGE = Long.MIN_VALUE;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	// Flows from any source to destination nodes are recorded in an open addressing table: the slot of an edge stores its
+	// key in edgeKeys and the number of flow units traversing the link in flowUnits (0 for a free slot)
+	private long[] edgeKeys = new long[INITIAL_CAPACITY];
+	private long[] flowUnits = new long[INITIAL_CAPACITY];
+	private int edgesNumber = 0;
+
+	// edge with more flow units and its number of flow units, updated as flows are allocated
+	private long maxEdge = NO_EDGE;
+	private long maxFlow = 0;
+
+	/*
+	 * Return the key of the undirected edge between nodeA and nodeB - as working on a undirected graph, the edge is
+	 * represented with the lower node integer in the high 32 bits and the higher in the low 32 bits
+	 */
+	public static long edgeKey(int nodeA, int nodeB) {
+		return ((long) Math.min(nodeA, nodeB) << 32) | (Math.max(nodeA, nodeB) & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * Return the lower node of the edge represented by key
+	 */
+	public static int edgeFrom(long key) {
+		return (int) (key >> 32);
+	}
+
+	/*
+	 * Return the higher node of the edge represented by key
+	 */
+	public static int edgeTo(long key) {
+		return (int) key;
+	}
+
+	private static int slotHash(long key) {
+		// mix the bits of the key (murmur3 finalizer) before taking the slot
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private void addFlow(long key, long units) {
+		// add units flow units to the edge represented by key, recording the edge if it is the first time
+		int mask = edgeKeys.length - 1;
+		int slot = slotHash(key) & mask;
+		while (flowUnits[slot] != 0 && edgeKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		if (flowUnits[slot] == 0) {
+			edgeKeys[slot] = key;
+			edgesNumber++;
+		}
+		long flow = flowUnits[slot] + units;
+		flowUnits[slot] = flow;
+		// ties go to the lowest key, so the edge found doesn't depend on the order the flows are added or merged in
+		if (flow > maxFlow || (flow == maxFlow && key < maxEdge)) {
+			maxFlow = flow;
+			maxEdge = key;
+		}
+		// keep the table at most half full
+		if (2 * edgesNumber > edgeKeys.length) {
+			resize(edgeKeys.length * 2);
+		}
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = edgeKeys;
+		long[] oldUnits = flowUnits;
+		edgeKeys = new long[capacity];
+		flowUnits = new long[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUnits[i] == 0) continue;
+			int slot = slotHash(oldKeys[i]) & mask;
+			while (flowUnits[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			edgeKeys[slot] = oldKeys[i];
+			flowUnits[slot] = oldUnits[i];
+		}
+	}
+
+	/*
+	 * Return the number of flow units allocated to the undirected edge between nodeA and nodeB
+	 */
+	public long getFlow(int nodeA, int nodeB) {
+		long key = edgeKey(nodeA, nodeB);
+		int mask = edgeKeys.length - 1;
+		int slot = slotHash(key) & mask;
+		while (flowUnits[slot] != 0) {
+			if (edgeKeys[slot] == key) return flowUnits[slot];
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
 	public void allocateFlows(Integer source, HashMap<Integer,Integer> BFSTreeUpstream) {
 
 		// This methods allocates flow units to edges between a source and a destination node following the shortest path in the BFS tree
 		// Assume path from source to destination as being already populated in BFSTreeUpstream
 		// Function explore upstream from destination to source
-		
+
 		// Input value: an integer representing a source node
 		// Input value: a tree sourced at the "source" node, representing for each node the neighbor versus the source
-		// Side effect: change the flowLinks private data structure adding flow units as exploring a tree
-		
+		// Side effect: change the flow table adding flow units as exploring a tree
+
 
 		// Algorithm implemented:
 		//		Trace back the BFS path in BFSTreeUpstream while finding the source node
-		//		  Add one unit of flow to flowLinks for the edge being explored
-		//		  Assure that the edge has being already recorded as key or create it
+		//		  Add one unit of flow to the edge being explored
 		//		  Check the next edge toward the source node
 		//		Add the last unit of flow on the edge toward the source and return
 
+		long start = Metrics.start();
+		int sourceNode = source;
 		// for each node in the BFS tree search the path back to the source node (provided as input)
 		for (Integer node:BFSTreeUpstream.keySet()) {
+			int current = node;
+			int upstream = BFSTreeUpstream.get(current);
 			// search the tree upstream up finding the source node
-			while (!BFSTreeUpstream.get(node).equals(source)) {
-				// represent the edge between node and its parent toward upstream as a Point of two integers
-				// as working on a undirected graph, represent the edge with the lower node integer as x and higher as y
-				Point edge = new Point(Math.min(BFSTreeUpstream.get(node),node),Math.max(BFSTreeUpstream.get(node),node));
-				
-				// for each edge traversed as exploring the tree, allocate a flow unit in flowLinks for the edge or add the edge with 1 flow unit			
-				if (flowLinks.containsKey(edge)) {
-					flowLinks.put(edge, flowLinks.get(edge)+1);
-				} else {
-					flowLinks.put(edge,1);
-				}
+			while (upstream != sourceNode) {
+				// for each edge traversed as exploring the tree, allocate a flow unit
+				addFlow(edgeKey(upstream, current), 1);
 				// search the next node toward the source
-				node=BFSTreeUpstream.get(node);			
+				current = upstream;
+				upstream = BFSTreeUpstream.get(current);
 			}
-			
+
 			// add the last edge to source
-			Point edge = new Point(Math.min(BFSTreeUpstream.get(node),node),Math.max(BFSTreeUpstream.get(node),node));
-				if (flowLinks.containsKey(edge)) {
-					flowLinks.put(edge, flowLinks.get(edge)+1);
-				} else {
-					flowLinks.put(edge,1);
-			}	
-		}	
+			addFlow(edgeKey(upstream, current), 1);
+		}
+		Metrics.stop(Metrics.Phase.FLOW_ALLOCATION, start);
 	}
 
+	public void allocateFlows(int[] nodes, int[] upstream, int count, int[] subtree) {
 
-	public Point moreFlow(){
-		// this method return the edge (represented as Point variable) in the flowLinks data structure with higher number of flow units
-		
-		Point pointToReturn=new Point();
-		Integer numFlows=0;
-		
-		if (flowLinks.isEmpty()) {
-			System.out.println("No Edges has being identified !!! - Check algorith if any flow have being allocated");
-			return null;
+		// This methods allocates the same flow units of allocateFlows(Integer, HashMap) for a BFS tree stored in arrays
+		// Input value: the count nodes of the tree in BFS order, nodes[0] being the source
+		// Input value: for each position i>0, the position in nodes of the neighbor versus the source of nodes[i]
+		// Input value: a working array of at least count elements
+		// Side effect: change the flow table adding flow units as exploring a tree
+
+		// Algorithm implemented:
+		//		The edge between a node and its upstream neighbor is traversed by the paths of all the nodes in the
+		//		subtree of the node, so visit the nodes in reverse BFS order adding the subtree size of each node
+		//		to the one of its upstream neighbor and allocate it on the edge between them - O(count) instead of
+		//		tracing back the path of each node
+
+		long start = Metrics.start();
+		Arrays.fill(subtree, 0, count, 1);
+		for (int i = count - 1; i > 0; i--) {
+			addFlow(edgeKey(nodes[i], nodes[upstream[i]]), subtree[i]);
+			subtree[upstream[i]] += subtree[i];
 		}
-		
-		// for each edge recorded in flowLinks
-		for (Point point:flowLinks.keySet()) {
-			// if the number of flow units accumulated is higher
-			if (flowLinks.get(point)>numFlows){
-				// make this the edge to return and update the max value of flow units found
-				pointToReturn=point;
-				numFlows=flowLinks.get(pointToReturn);
+		Metrics.stop(Metrics.Phase.FLOW_ALLOCATION, start);
+	}
+
+	public void addFlows(Flows other){
+		// this method adds to the flow table the flow units recorded in other, to merge the flows allocated
+		// by different threads
+		for (int i = 0; i < other.edgeKeys.length; i++) {
+			if (other.flowUnits[i] != 0) {
+				addFlow(other.edgeKeys[i], other.flowUnits[i]);
 			}
 		}
-		
-		return pointToReturn;
 	}
-	
+
+	public long moreFlow(){
+		// this method return the key of the edge (see edgeKey) with higher number of flow units, NO_EDGE if no flow was allocated
+
+		if (edgesNumber == 0) {
+			System.out.println("No Edges has being identified !!! - Check algorith if any flow have being allocated");
+			return NO_EDGE;
+		}
+
+		return maxEdge;
+	}
+
 	public void resetFlows(){
-		flowLinks.clear();
+		// clear the table keeping its capacity for the next allocation
+		Arrays.fill(flowUnits, 0);
+		edgesNumber = 0;
+		maxEdge = NO_EDGE;
+		maxFlow = 0;
 	}
-	
+
 	public String toString() {
-		return flowLinks.toString();
+		StringBuilder toReturn = new StringBuilder("{");
+		for (int i = 0; i < edgeKeys.length; i++) {
+			if (flowUnits[i] == 0) continue;
+			if (toReturn.length() > 1) toReturn.append(", ");
+			toReturn.append('[').append(edgeFrom(edgeKeys[i])).append(", ").append(edgeTo(edgeKeys[i])).append("]=").append(flowUnits[i]);
+		}
+		return toReturn.append('}').toString();
 	}
-	
+
 	public static void main(String[] args) {
-		
-		// The following example test the flow call 
+
+		// The following example test the flow call
 		System.out.println("Example using Flows");
 		HashMap<Integer,Integer> BFSTreeUpstreamTest= new HashMap<Integer,Integer>();
 		Flows flowTest = new Flows();
-		
+
 		// static definition of the tree to search
 		BFSTreeUpstreamTest.put(5, 3);
 		BFSTreeUpstreamTest.put(4, 3);
 		BFSTreeUpstreamTest.put(3, 2);
 		BFSTreeUpstreamTest.put(2, 1);
-		
-		System.out.println("Example BFS"+BFSTreeUpstreamTest);		
-		
+
+		System.out.println("Example BFS"+BFSTreeUpstreamTest);
+
 		flowTest.allocateFlows(1,BFSTreeUpstreamTest);
 
 		System.out.println("Example Flows allocation: "+flowTest);
-		System.out.println(flowTest.moreFlow());
-	
+		long edge = flowTest.moreFlow();
+		System.out.println("["+edgeFrom(edge)+", "+edgeTo(edge)+"]");
+
 	}
 
 }
@@ -0,0 +1,214 @@
+package graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import util.GraphLoader;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The GraphBenchmark class measures the hot paths of the graph package on the facebook data sets and on synthetic
+ * graphs of increasing size, so that a change of the graph representation can be judged by numbers instead of the
+ * running times printed by MinCut and denseComunities.
+ *
+ * Each benchmark runs WARMUP_ITERATIONS operations to let the JIT compile the code, then MEASURED_ITERATIONS
+ * operations timed with System.nanoTime; the bytes allocated by each operation are read from the thread's allocation
+ * counter (com.sun.management.ThreadMXBean), so the searches that can use more threads are run on a single thread
+ * to keep the count complete. For each benchmark it prints the average, minimum and maximum time per operation, the
+ * bytes allocated per operation and the allocation rate.
+ *
+ * Benchmarks:
+ *		loadGraph of the data set in a CapGraph, getSCCs, getCCs, getEgonet of every vertex, transposeGraph, clone,
+ *		one Kager's iteration, allocateFlows of a BFS tree (map and array versions) and one round of
+ *		seachComponentsIterations (only on graphs up to MAX_ROUND_VERTEXES vertexes, the round being O(V*E))
+ *
+ * Usage: GraphBenchmark [<data set> ...] - the facebook data sets when none is given, followed by the synthetic graphs
+ **/
+
+public class GraphBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURED_ITERATIONS = 10;
+	// synthetic graphs (see SyntheticGraphs.stochasticBlockModel): number of vertexes, vertexes per planted community
+	// and average number of neighbours of a vertex in its community
+	private static final int[] SYNTHETIC_VERTEXES = {2000, 8000, 32000};
+	private static final int SYNTHETIC_COMMUNITY_SIZE = 100;
+	private static final int SYNTHETIC_DEGREE = 8;
+	private static final long SYNTHETIC_SEED = 42;
+	// largest graph on which a round of seachComponentsIterations is measured
+	private static final int MAX_ROUND_VERTEXES = 2500;
+
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	// results of the operations are stored here so that the JIT can't drop the work as unused
+	private static volatile Object sink;
+
+	private interface Operation {
+		Object run() throws Exception;
+	}
+
+	private static void measure(String dataSet, String name, Operation operation) throws Exception {
+		// Run the operation and print its time and allocation per operation
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			sink = operation.run();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long minTime = Long.MAX_VALUE;
+		long maxTime = 0;
+		long sumTime = 0;
+		long sumBytes = 0;
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			long startBytes = THREAD_BEAN.getThreadAllocatedBytes(threadId);
+			long startTime = System.nanoTime();
+			sink = operation.run();
+			long time = System.nanoTime() - startTime;
+			sumBytes += THREAD_BEAN.getThreadAllocatedBytes(threadId) - startBytes;
+			sumTime += time;
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+		}
+
+		double avgMillis = sumTime / 1e6 / MEASURED_ITERATIONS;
+		double bytesPerOp = sumBytes / (double) MEASURED_ITERATIONS;
+		double rate = sumTime == 0 ? 0.0 : sumBytes / (sumTime / 1e9) / (1 << 20);
+		System.out.println(String.format("%-24s %-30s %10.3f %10.3f %10.3f %14.0f %10.1f", dataSet, name, avgMillis,
+				minTime / 1e6, maxTime / 1e6, bytesPerOp, rate));
+	}
+
+	private static void benchmark(String label, String dataSet) throws Exception {
+		// Run all benchmarks on the data set, printed with the given label
+
+		measure(label, "loadGraph", () -> {
+			CapGraph g = new CapGraph();
+			GraphLoader.loadGraph(g, dataSet, 1);
+			return g;
+		});
+
+		CapGraph graph = new CapGraph();
+		GraphLoader.loadGraph(graph, dataSet, 1);
+		Integer[] vertexes = graph.getVertices().toArray(new Integer[0]);
+
+		measure(label, "getSCCs", () -> graph.getSCCs());
+		measure(label, "getCCs", () -> graph.getCCs());
+		measure(label, "getEgonet (all vertexes)", () -> {
+			long edges = 0;
+			for (Integer v:vertexes) {
+				edges += ((CapGraph) graph.getEgonet(v)).GetEdgesNumber();
+			}
+			return edges;
+		});
+		measure(label, "transposeGraph", () -> graph.transposeGraph());
+		measure(label, "clone", () -> graph.clone());
+
+		// the searches are built from a snapshot, as their data set constructors print a loading banner
+		GraphSnapshot snapshot = GraphSnapshot.fromDataSet(dataSet);
+		MinCut minCut = new MinCut(snapshot);
+		Random random = new Random(SYNTHETIC_SEED);
+		measure(label, "Kager", () -> minCut.runKager(random));
+
+		// BFS tree of the first vertex as upstream map and as arrays
+		CSRGraph compressed = new CSRGraph(graph);
+		HashMap<Integer, Integer> upstreamMap = new HashMap<Integer, Integer>();
+		int[] nodes = new int[compressed.vertexCount()];
+		int[] upstream = new int[compressed.vertexCount()];
+		int count = bfsTree(compressed, 0, nodes, upstream, upstreamMap);
+		int[] subtree = new int[compressed.vertexCount()];
+		Flows flows = new Flows();
+		measure(label, "Flows.allocateFlows (map)", () -> {
+			flows.resetFlows();
+			flows.allocateFlows(compressed.idOf(0), upstreamMap);
+			return flows;
+		});
+		measure(label, "Flows.allocateFlows (arrays)", () -> {
+			flows.resetFlows();
+			flows.allocateFlows(nodes, upstream, count, subtree);
+			return flows;
+		});
+
+		if (graph.GetVertexesNumber() <= MAX_ROUND_VERTEXES) {
+			// each round removes one more edge, so the graph measured changes slightly at every operation
+			denseComunities communities = new denseComunities(snapshot);
+			communities.setThreads(1);
+			measure(label, "seachComponentsIterations(1)", () -> {
+				communities.seachComponentsIterations(1, false);
+				return communities;
+			});
+		}
+	}
+
+	private static int bfsTree(CSRGraph graph, int source, int[] nodes, int[] upstream,
+			HashMap<Integer, Integer> upstreamMap) {
+		// Fill nodes with the vertex integers in BFS order from source and upstream with the position of the neighbour
+		// toward the source of each node, as denseComunities does, and upstreamMap with the same tree by vertex integer
+		int[] position = new int[graph.vertexCount()];
+		Arrays.fill(position, -1);
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add(source);
+		position[source] = 0;
+		nodes[0] = graph.idOf(source);
+		int count = 1;
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				int w = targets[k];
+				if (position[w] < 0) {
+					position[w] = count;
+					nodes[count] = graph.idOf(w);
+					upstream[count++] = position[v];
+					upstreamMap.put(graph.idOf(w), graph.idOf(v));
+					queue.add(w);
+				}
+			}
+		}
+		return count;
+	}
+
+	private static String writeSyntheticGraph(int vertexes) throws IOException {
+		// Write in a temporary file a stochastic block model graph with communities of SYNTHETIC_COMMUNITY_SIZE vertexes,
+		// each vertex having on average SYNTHETIC_DEGREE neighbours in its community and one outside
+		File file = File.createTempFile("synthetic_" + vertexes + "_", ".txt");
+		file.deleteOnExit();
+		try (SyntheticGraphs.EdgeSink sink = SyntheticGraphs.toFile(file.getPath())) {
+			SyntheticGraphs.stochasticBlockModel(vertexes, vertexes / SYNTHETIC_COMMUNITY_SIZE,
+					SYNTHETIC_DEGREE / (double) (SYNTHETIC_COMMUNITY_SIZE - 1), 1.0 / vertexes, SYNTHETIC_SEED, sink);
+		}
+		return file.getPath();
+	}
+
+	public static void main(String[] args) throws Exception {
+		// Input value: the data sets to measure (default: the facebook data sets), the synthetic graphs are always added
+
+		// expose the phase times and counters to JMX consoles while the benchmarks run
+		Metrics.registerMBeanIfEnabled();
+
+		// label and file of each data set
+		LinkedHashMap<String, String> dataSets = new LinkedHashMap<String, String>();
+		if (args.length == 0) {
+			dataSets.put("facebook_1000.txt", "data/facebook_1000.txt");
+			dataSets.put("facebook_2000.txt", "data/facebook_2000.txt");
+		}
+		for (String arg:args) {
+			dataSets.put(new File(arg).getName(), arg);
+		}
+		for (int vertexes:SYNTHETIC_VERTEXES) {
+			dataSets.put("synthetic_" + vertexes, writeSyntheticGraph(vertexes));
+		}
+
+		System.out.println(String.format("%-24s %-30s %10s %10s %10s %14s %10s", "data set", "benchmark", "avg ms",
+				"min ms", "max ms", "bytes/op", "MB/s"));
+		for (String label:dataSets.keySet()) {
+			benchmark(label, dataSets.get(label));
+		}
+	}
+}
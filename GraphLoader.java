@@ -1,47 +1,323 @@
 /**
  * @author UCSD MOOC development team
- * 
+ *
  * Utility class to add vertices and edges to a graph
  *
  */
 package util;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Scanner;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import graph.BulkGraph;
+import graph.Metrics;
 
 public class GraphLoader {
+    // largest slice of the file mapped and parsed as a single chunk
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+    // files smaller than this are parsed as a single chunk on the calling thread
+    private static final long MIN_PARALLEL_BYTES = 1L << 20;
+    // chunks per thread: the more chunks, the fewer parsed and not added yet
+    private static final int CHUNKS_PER_THREAD = 4;
+
     /**
      * Loads graph with data from a file.
      * The file should consist of lines with 2 integers each, corresponding
      * to a "from" vertex and a "to" vertex.
-     */ 
+     */
     public static void loadGraph(graph.Graph g, String filename) {
-        Set<Integer> seen = new HashSet<Integer>();
-        Scanner sc;
-        try {
-            sc = new Scanner(new File(filename));
-        } catch (Exception e) {
+        loadGraph(g, filename, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads graph with data from a file using the given number of threads.
+     * The file is memory mapped and split in chunks ending at a line break;
+     * each chunk is parsed in parallel straight from the mapped bytes in an
+     * int array of (from, to) couples and added to the graph as soon as it
+     * and the chunks before it are parsed, in bulk when the graph implements
+     * graph.BulkGraph. At most one chunk per thread is parsed ahead of the
+     * one being added, so the parsed couples held at once stay a fraction of
+     * the file.
+     * A line holding other than 0 or 2 integers, or an integer not fitting in
+     * an int, is malformed: an IllegalArgumentException is thrown, after the
+     * lines of the chunks before it were added.
+     */
+    public static void loadGraph(graph.Graph g, String filename, int threads) {
+        long start = Metrics.start();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            load(g, channel, Math.max(1, threads), filename);
+        } catch (IOException e) {
             e.printStackTrace();
             return;
         }
-        // Iterate over the lines in the file, adding new
+        Metrics.stop(Metrics.Phase.LOAD, start);
+    }
+
+    private static void load(graph.Graph g, FileChannel channel, int threads, String filename) throws IOException {
+        long size = channel.size();
+        Set<Integer> seen = g instanceof BulkGraph ? null : new HashSet<Integer>();
+
+        // split the file in chunks of about the same size moving each boundary after the next line break,
+        // with more chunks than threads to bound the chunks parsed ahead, and more again when a single chunk
+        // would be too large to map
+        int chunksNumber = size < MIN_PARALLEL_BYTES ? 1
+                : (int) Math.max(CHUNKS_PER_THREAD * threads, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        if (chunksNumber == 1) {
+            add(g, parseChunk(channel, 0, size, filename), seen);
+            return;
+        }
+        long[] bounds = new long[chunksNumber + 1];
+        bounds[chunksNumber] = size;
+        for (int c = 1; c < chunksNumber; c++) {
+            bounds[c] = Math.max(bounds[c - 1], nextLineStart(channel, size * c / chunksNumber));
+        }
+
+        // a window of threads chunks is parsed ahead: taking chunk c submits chunk c + threads
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunksNumber));
+        try {
+            List<Future<EdgeParser>> parsed = new ArrayList<Future<EdgeParser>>();
+            for (int c = 0; c < chunksNumber; c++) {
+                parsed.add(null);
+            }
+            for (int c = 0; c < Math.min(threads, chunksNumber); c++) {
+                parsed.set(c, submitChunk(pool, channel, bounds, c, filename));
+            }
+            for (int c = 0; c < chunksNumber; c++) {
+                EdgeParser chunk = parsed.get(c).get();
+                parsed.set(c, null);
+                if (c + threads < chunksNumber) {
+                    parsed.set(c + threads, submitChunk(pool, channel, bounds, c + threads, filename));
+                }
+                add(g, chunk, seen);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Loading " + filename + " interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Loading " + filename + " failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Future<EdgeParser> submitChunk(ExecutorService pool, FileChannel channel, long[] bounds, int c,
+            String filename) {
+        final long start = bounds[c];
+        final long end = bounds[c + 1];
+        return pool.submit(() -> parseChunk(channel, start, end, filename));
+    }
+
+    private static void add(graph.Graph g, EdgeParser chunk, Set<Integer> seen) {
+        int[] edges = chunk.values();
+        int count = chunk.edgeCount();
+        if (seen == null) {
+            ((BulkGraph) g).addEdges(edges, count);
+            return;
+        }
+
+        // Iterate over the parsed couples, adding new
         // vertices as they are found and connecting them with edges.
-        while (sc.hasNextInt()) {
-            int v1 = sc.nextInt();
-            int v2 = sc.nextInt();
-            if (!seen.contains(v1)) {
+        for (int i = 0; i < count; i++) {
+            int v1 = edges[2 * i];
+            int v2 = edges[2 * i + 1];
+            if (seen.add(v1)) {
                 g.addVertex(v1);
-                seen.add(v1);
             }
-            if (!seen.contains(v2)) {
+            if (seen.add(v2)) {
                 g.addVertex(v2);
-                seen.add(v2);
             }
             g.addEdge(v1, v2);
         }
-        
-        sc.close();
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        // return the position following the first line break at or after position (or the file size)
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static EdgeParser parseChunk(FileChannel channel, long start, long end, String filename)
+            throws IOException {
+        // Parse the lines in the bytes [start, end) of the file, which start at a line start
+        EdgeParser parser = new EdgeParser(filename, start, (int) Math.min(Integer.MAX_VALUE - 8, (end - start) / 6));
+        if (end > start) {
+            parser.accept(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        }
+        parser.finish();
+        return parser;
+    }
+
+    /**
+     * Incremental parser of the lines of a graph file. The bytes can be fed
+     * in any number of pieces: a line split between two pieces is completed
+     * by the next one, and only the couples of complete lines are returned,
+     * so the same parser serves the loader and the readers of a file while it
+     * is written (graph.StreamingComponents).
+     * Any byte other than a digit, a minus sign before a number or a line
+     * break separates two integers. A line holding other than 0 or 2
+     * integers, or an integer not fitting in an int, is malformed input and
+     * raises an IllegalArgumentException giving the byte offset of the line.
+     */
+    public static final class EdgeParser {
+        private final String source;
+        // couples of the complete lines in values[0, complete), then the integers of the current line
+        private int[] values;
+        private int complete = 0;
+        private int count = 0;
+        // offset in the source of the next byte and of the current line
+        private long offset;
+        private long lineStart;
+        private long value = 0;
+        private boolean negative = false;
+        private boolean inNumber = false;
+
+        /**
+         * Creates a parser of the bytes of source, the first one fed being at
+         * offset in the source, with room for about capacity integers.
+         */
+        public EdgeParser(String source, long offset, int capacity) {
+            this.source = source;
+            this.offset = offset;
+            this.lineStart = offset;
+            this.values = new int[Math.max(16, capacity)];
+        }
+
+        /**
+         * Parses the bytes from the position to the limit of bytes, moving
+         * the position to the limit.
+         */
+        public void accept(ByteBuffer bytes) {
+            int limit = bytes.limit();
+            for (int i = bytes.position(); i < limit; i++) {
+                byte b = bytes.get(i);
+                if (b >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                    inNumber = true;
+                    if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                        throw malformed("an integer out of the int range");
+                    }
+                } else if (b == '-' && !inNumber) {
+                    negative = true;
+                } else {
+                    endNumber();
+                    if (b == '\n') {
+                        endLine(offset + (i - bytes.position()) + 1);
+                    }
+                }
+            }
+            offset += limit - bytes.position();
+            bytes.position(limit);
+        }
+
+        /**
+         * Ends the last line at the end of the input, even without a line break.
+         */
+        public void finish() {
+            endNumber();
+            endLine(offset);
+        }
+
+        /**
+         * Returns the array holding the couples of the complete lines in its
+         * first 2 * edgeCount() slots.
+         */
+        public int[] values() {
+            return values;
+        }
+
+        /**
+         * Returns the number of couples of the complete lines.
+         */
+        public int edgeCount() {
+            return complete / 2;
+        }
+
+        /**
+         * Returns the offset in the source of the first byte of the current
+         * line, the one not ended yet.
+         */
+        public long lineStart() {
+            return lineStart;
+        }
+
+        /**
+         * Forgets the couples of the complete lines, keeping the current line.
+         */
+        public void clear() {
+            System.arraycopy(values, complete, values, 0, count - complete);
+            count -= complete;
+            complete = 0;
+        }
+
+        /**
+         * Forgets everything parsed, the next byte being at offset in the source.
+         */
+        public void reset(long offset) {
+            complete = 0;
+            count = 0;
+            this.offset = offset;
+            lineStart = offset;
+            value = 0;
+            negative = false;
+            inNumber = false;
+        }
+
+        private void endNumber() {
+            if (inNumber) {
+                if (count - complete == 2) {
+                    throw malformed("more than 2 integers");
+                }
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[count++] = (int) (negative ? -value : value);
+            }
+            value = 0;
+            negative = false;
+            inNumber = false;
+        }
+
+        private void endLine(long nextLineStart) {
+            if (count - complete == 1) {
+                throw malformed("a single integer");
+            }
+            complete = count;
+            lineStart = nextLineStart;
+        }
+
+        private IllegalArgumentException malformed(String problem) {
+            return new IllegalArgumentException("Malformed graph file " + source + ": the line at byte " + lineStart
+                    + " has " + problem);
+        }
     }
 }
@@ -0,0 +1,248 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import util.GraphLoader;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The GraphSnapshot class stores a graph on disk in a binary format that can be read back with a few bulk reads
+ * from a memory mapped file, avoiding to parse the text edge list and to search the connected components again.
+ *
+ * The file holds a header followed by the compressed rows of a CSRGraph, as little endian integers:
+ *		magic number, format version, number of connected components of the source graph, number of vertexes n
+ *		  (32 bit), number of edges m (64 bit)
+ *		vertexIds[n] (32 bit), offsets[n+1] (64 bit), targets[m] (32 bit)
+ * The vertexes are sorted and the targets are stored as vertex indexes, exactly as CSRGraph keeps them in memory.
+ * Edge counts and offsets are 64 bit so that a snapshot mapped by MappedGraph can hold more than 2^31 edges; read
+ * copies the rows in a CSRGraph and so accepts only snapshots that fit in Java arrays. Version 1 snapshots, with 32
+ * bit offsets, are rejected: convert the data set again with main.
+ *
+ * MinCut and denseComunities accept a snapshot file (with extension EXTENSION) in place of the text data set; the
+ * main method converts a text data set in a snapshot of its connected component with more edges.
+ * A snapshot can also be searched in place, without copying it in the heap, through a MappedGraph.
+ **/
+
+public class GraphSnapshot {
+
+	public static final String EXTENSION = ".snap";
+
+	private static final int MAGIC = 0x50414E53;	// "SNAP" in little endian
+	private static final int VERSION = 2;
+	// magic, version, components, n and m as two integers (low first)
+	static final int HEADER_INTS = 6;
+	// largest region mapped at once when reading the arrays
+	private static final int MAX_MAPPED_INTS = 1 << 28;
+
+	// the graph stored in the snapshot
+	private final CSRGraph graph;
+	// number of connected components in the data set the graph was extracted from
+	private final int componentsNumber;
+
+	public GraphSnapshot(CSRGraph graph, int componentsNumber) {
+		this.graph = graph;
+		this.componentsNumber = componentsNumber;
+	}
+
+	public CSRGraph getGraph() {
+		return graph;
+	}
+
+	public int getComponentsNumber() {
+		return componentsNumber;
+	}
+
+	/*
+	 * Load a text data set with GraphLoader and keep its connected component with more edges, as the MinCut and
+	 * denseComunities constructors do
+	 */
+	public static GraphSnapshot fromDataSet(String dataSet) {
+		CSRGraph tempGraph = new CSRGraph();
+		GraphLoader.loadGraph(tempGraph, dataSet);
+
+		// select the component in a single pass and copy only its rows
+		SubgraphView largest = tempGraph.largestConnectedComponent();
+		return new GraphSnapshot(largest.toCSRGraph(), largest.getComponents().count());
+	}
+
+	/*
+	 * Return the snapshot of dataSet, read if it is a snapshot file (EXTENSION) and loaded from the text data set
+	 * otherwise, as the MinCut and denseComunities constructors take it - null, after printing the error, if the
+	 * snapshot file can't be read
+	 */
+	public static GraphSnapshot load(String dataSet) {
+		if (!dataSet.endsWith(EXTENSION)) {
+			return fromDataSet(dataSet);
+		}
+		try {
+			return read(dataSet);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/*
+	 * Write the snapshot to the file named fileName, replacing it if it exists
+	 */
+	public void write(String fileName) throws IOException {
+		int[] ids = graph.ids();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(componentsNumber).putInt(ids.length)
+					.putLong(targets.length);
+			writeInts(channel, buffer, ids);
+			writeLongs(channel, buffer, offsets);
+			writeInts(channel, buffer, targets);
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+		// copy values in the buffer flushing it to the channel each time it is full
+		int written = 0;
+		while (written < values.length) {
+			int count = Math.min(values.length - written, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, written, count);
+			buffer.position(buffer.position() + 4 * count);
+			written += count;
+			if (buffer.remaining() < 4) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+			}
+		}
+	}
+
+	private static void writeLongs(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+		// copy values widened to 64 bit in the buffer flushing it to the channel each time it is full
+		for (int value:values) {
+			if (buffer.remaining() < 8) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+			}
+			buffer.putLong(value);
+		}
+	}
+
+	/*
+	 * Read a snapshot written by write; throws an IOException if the file is not a snapshot of a supported version
+	 * or if it is truncated, or if it has too many edges for the heap (open it with MappedGraph instead)
+	 */
+	public static GraphSnapshot read(String fileName) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			long[] header = readHeader(channel, fileName);
+			int n = (int) header[3];
+			long m = header[4];
+			if (m > Integer.MAX_VALUE - 8) {
+				throw new IOException(fileName + " has " + m + " edges, too many for a CSRGraph: map it with MappedGraph");
+			}
+
+			long position = 4L * HEADER_INTS;
+			int[] ids = readInts(channel, position, n);
+			position += 4L * n;
+			int[] offsets = readOffsets(channel, position, n + 1);
+			position += 8L * (n + 1);
+			int[] targets = readInts(channel, position, (int) m);
+			if (offsets[0] != 0 || offsets[n] != m) {
+				throw new IOException(fileName + " is truncated or corrupted");
+			}
+			return new GraphSnapshot(new CSRGraph(ids, offsets, targets), (int) header[2]);
+		}
+	}
+
+	/*
+	 * Read and check the header of the snapshot open in channel: magic number, version, number of connected components,
+	 * number of vertexes and of edges - throws an IOException if the file is not a snapshot of a supported version or
+	 * if its size doesn't match the header
+	 */
+	static long[] readHeader(FileChannel channel, String fileName) throws IOException {
+		long size = channel.size();
+		if (size < 4L * HEADER_INTS) {
+			throw new IOException(fileName + " is too short to be a graph snapshot");
+		}
+		int[] ints = readInts(channel, 0, HEADER_INTS);
+		if (ints[0] != MAGIC) {
+			throw new IOException(fileName + " is not a graph snapshot");
+		}
+		if (ints[1] != VERSION) {
+			throw new IOException(fileName + " has unsupported snapshot version " + ints[1]);
+		}
+		long n = ints[3];
+		long m = (ints[4] & 0xFFFFFFFFL) | ((long) ints[5] << 32);
+		if (n < 0 || m < 0 || size != 4L * (HEADER_INTS + n + m) + 8L * (n + 1)) {
+			throw new IOException(fileName + " is truncated or corrupted");
+		}
+		return new long[] {ints[0], ints[1], ints[2], n, m};
+	}
+
+	private static int[] readInts(FileChannel channel, long position, int count) throws IOException {
+		// bulk copy count integers from the mapped file, mapping at most MAX_MAPPED_INTS of them at once
+		int[] toReturn = new int[count];
+		int read = 0;
+		while (read < count) {
+			int chunk = Math.min(count - read, MAX_MAPPED_INTS);
+			IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * read, 4L * chunk)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			ints.get(toReturn, read, chunk);
+			read += chunk;
+		}
+		return toReturn;
+	}
+
+	private static int[] readOffsets(FileChannel channel, long position, int count) throws IOException {
+		// bulk copy count 64 bit offsets from the mapped file narrowing them to int, as checked by read
+		int[] toReturn = new int[count];
+		long[] chunkValues = new long[Math.min(count, MAX_MAPPED_INTS / 2)];
+		int read = 0;
+		while (read < count) {
+			int chunk = Math.min(count - read, chunkValues.length);
+			LongBuffer longs = channel.map(FileChannel.MapMode.READ_ONLY, position + 8L * read, 8L * chunk)
+					.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			longs.get(chunkValues, 0, chunk);
+			for (int i = 0; i < chunk; i++) {
+				toReturn[read + i] = (int) chunkValues[i];
+			}
+			read += chunk;
+		}
+		return toReturn;
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Convert a text data set in a snapshot of its largest connected component
+		// Input value: the text data set and the snapshot file to write (default: data set name + EXTENSION)
+
+		if (args.length < 1) {
+			System.out.println("Usage: GraphSnapshot <data set> [<snapshot file>]");
+			return;
+		}
+		String snapshotFile = args.length > 1 ? args[1] : args[0] + EXTENSION;
+
+		GraphSnapshot snapshot = fromDataSet(args[0]);
+		snapshot.write(snapshotFile);
+
+		System.out.println("Data set proposed has "+snapshot.getComponentsNumber()+" connected components");
+		System.out.println("Written largest component to "+snapshotFile);
+		System.out.println("  Number of Vertexex: "+snapshot.getGraph().vertexCount());
+		System.out.println("  Number of Edges: "+snapshot.getGraph().edgeCount()/2);
+	}
+}
@@ -0,0 +1,222 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The LabelPropagation class gives a rough division of an undirected graph in communities in near linear time, when
+ * the edge removal of denseComunities or the modularity search of Louvain take too long:
+ *		each vertex starts with its own label
+ *		at each iteration every vertex takes the label carried by most of its neighbours (ties broken at random, its
+ *		  own label kept when it is among the most frequent)
+ *		vertexes with the same label at the end form a community
+ * The search stops after setMaxIterations iterations or when the fraction of vertexes changing label in an iteration
+ * falls to setConvergence.
+ *
+ * Updates are semi-synchronous: the vertexes are visited in a random order, in chunks of CHUNK vertexes whose new
+ * labels are computed in parallel from the labels left by the previous chunk, then applied together. Each worker
+ * counts the labels of the neighbours in its own frequency table, so the result depends on the seed but not on the
+ * number of threads.
+ *
+ * The graph is assumed undirected (each edge stored in both directions) as the facebook's friend graph data set.
+ **/
+
+public class LabelPropagation {
+
+	// vertexes whose labels are computed together
+	private static final int CHUNK = 1024;
+
+	// the graph investigated
+	private final CSRGraph graph;
+	private int maxIterations = 20;
+	// fraction of the vertexes changing label under which the search stops
+	private double convergence = 0.001;
+	private long seed = 42;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	// number of iterations run by the last search
+	private int iterations = 0;
+
+	public LabelPropagation(CSRGraph graph) {
+		this.graph = graph;
+	}
+
+	public LabelPropagation(CapGraph graph) {
+		this(new CSRGraph(graph));
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = Math.max(1, maxIterations);
+	}
+
+	public void setConvergence(double convergence) {
+		this.convergence = Math.max(0.0, convergence);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public CSRGraph getGraph() {
+		return graph;
+	}
+
+	/*
+	 * Return the number of iterations run by the last search
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/*
+	 * Search the communities of the graph and return them as a partition of its vertexes
+	 */
+	public Components detect() {
+		return Components.of(graph, propagate());
+	}
+
+	/*
+	 * Search the communities of the graph and return the community of each vertex index (graph.idOf gives the vertex),
+	 * numbered from 0
+	 */
+	public int[] propagate() {
+		int n = graph.vertexCount();
+		int[] labels = new int[n];
+		int[] order = new int[n];
+		for (int v = 0; v < n; v++) {
+			labels[v] = v;
+			order[v] = v;
+		}
+		int[] next = new int[n];
+		Random random = new Random(seed);
+
+		int tasks = threads > 1 && n > CHUNK ? threads : 1;
+		SparseWeights[] tables = new SparseWeights[tasks];
+		int[] offsets = graph.offsets();
+		int maxRowLength = 0;
+		for (int v = 0; v < n; v++) {
+			maxRowLength = Math.max(maxRowLength, offsets[v + 1] - offsets[v]);
+		}
+		for (int t = 0; t < tasks; t++) {
+			tables[t] = new SparseWeights(maxRowLength);
+		}
+		ExecutorService pool = tasks > 1 ? Executors.newFixedThreadPool(tasks) : null;
+		try {
+			iterations = 0;
+			while (iterations < maxIterations) {
+				long salt = random.nextLong();
+				shuffle(order, random);
+				long changed = 0;
+				for (int start = 0; start < n; start += CHUNK) {
+					int end = Math.min(n, start + CHUNK);
+					// compute the labels of the chunk in parallel slices on the same labels
+					if (pool == null) {
+						for (int i = start; i < end; i++) {
+							next[i] = dominantLabel(order[i], labels, salt, tables[0]);
+						}
+					} else {
+						List<Callable<Void>> slices = new ArrayList<Callable<Void>>();
+						int sliceSize = (end - start + tasks - 1) / tasks;
+						for (int t = 0; t < tasks; t++) {
+							int sliceStart = start + t * sliceSize;
+							int sliceEnd = Math.min(end, sliceStart + sliceSize);
+							SparseWeights table = tables[t];
+							slices.add(() -> {
+								for (int i = sliceStart; i < sliceEnd; i++) {
+									next[i] = dominantLabel(order[i], labels, salt, table);
+								}
+								return null;
+							});
+						}
+						for (Future<Void> f:pool.invokeAll(slices)) {
+							f.get();
+						}
+					}
+
+					// apply the labels
+					for (int i = start; i < end; i++) {
+						if (labels[order[i]] != next[i]) {
+							labels[order[i]] = next[i];
+							changed++;
+						}
+					}
+				}
+				iterations++;
+				Metrics.count(Metrics.Counter.NODES_VISITED, n);
+				Metrics.count(Metrics.Counter.EDGES_TRAVERSED, graph.edgeCount());
+				if (changed <= convergence * n) break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Label propagation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Label propagation failed", e.getCause());
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+		return Components.of(graph, labels).labels();
+	}
+
+	private int dominantLabel(int v, int[] labels, long salt, SparseWeights table) {
+		// Return the label carried by most neighbours of v, its own label if it is one of them, otherwise the one
+		// with the lowest hash among the most frequent - the hash changes at each iteration with salt
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+			if (targets[k] != v) {
+				table.add(labels[targets[k]], 1.0);
+			}
+		}
+		int current = labels[v];
+		if (table.size() == 0) return current;
+
+		// the own label, when carried by a neighbour, wins the ties
+		int best = current;
+		double bestCount = table.weightOf(current);
+		long bestHash = bestCount > 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		for (int i = 0; i < table.size(); i++) {
+			int label = table.key(i);
+			double count = table.weight(i);
+			if (count < bestCount || label == current) continue;
+			long hash = hash(label, salt);
+			if (count > bestCount || hash < bestHash) {
+				best = label;
+				bestCount = count;
+				bestHash = hash;
+			}
+		}
+		table.clear();
+		return best;
+	}
+
+	private static long hash(int label, long salt) {
+		// splitmix64 finalizer
+		long z = salt + label * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static void shuffle(int[] order, Random random) {
+		// Fisher-Yates shuffle
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+	}
+}
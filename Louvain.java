@@ -0,0 +1,483 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The Louvain class divides an undirected graph in communities maximizing their modularity: the fraction of edges
+ * inside the communities minus the fraction expected if the edges were placed at random keeping the degrees,
+ *		Q = sum over communities c of in(c)/2m - resolution * (tot(c)/2m)^2
+ * where in(c) counts twice the edges inside c, tot(c) is the sum of the degrees of its vertexes and m the number of
+ * edges. Unlike the edge removal of denseComunities, which costs a traversal from every vertex per edge removed, each
+ * level costs a few passes over the edges.
+ *
+ * The search follows the Leiden version of the Louvain method, repeating on graphs of decreasing size:
+ *		Local moving: move each vertex to the neighbouring community with the highest modularity gain, until no
+ *		  vertex moves
+ *		Refinement: split each community in well connected sub communities, merging greedily singleton vertexes
+ *		  well connected to their community into sub communities well connected to it, so that no community found is
+ *		  disconnected as it can happen with Louvain
+ *		Aggregation: collapse each sub community in a vertex of the next level, with weighted edges summing the edges
+ *		  between the sub communities, and start the next level from the communities of the local moving
+ * The search stops when the refinement leaves every vertex alone, then communities whose sub communities are not
+ * linked to each other are split in their connected parts.
+ *
+ * Graphs are kept in primitive arrays (compressed rows with double weights). The moves of the vertexes of a chunk of
+ * CHUNK vertexes are evaluated in parallel on the communities left by the previous chunk, then applied together, and
+ * the communities are refined in parallel; the result doesn't depend on the number of threads.
+ *
+ * The graph is assumed undirected (each edge stored in both directions) as the facebook's friend graph data set.
+ **/
+
+public class Louvain {
+
+	// vertexes whose moves are evaluated together in the local moving phase
+	private static final int CHUNK = 1024;
+	// maximum passes over the vertexes in the local moving phase of a level, and maximum number of levels
+	private static final int MAX_ROUNDS = 32;
+	private static final int MAX_LEVELS = 32;
+
+	// the graph investigated
+	private final CSRGraph graph;
+	// weight of the expected edges in the modularity: higher values find smaller communities
+	private double resolution = 1.0;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	public Louvain(CSRGraph graph) {
+		this.graph = graph;
+	}
+
+	public Louvain(CapGraph graph) {
+		this(new CSRGraph(graph));
+	}
+
+	public void setResolution(double resolution) {
+		this.resolution = resolution;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/*
+	 * A weighted graph of a level: the neighbours of v are targets[offsets[v]] ... targets[offsets[v+1]-1] with the
+	 * weights at the same positions, a self loop standing for the edges inside an aggregated vertex
+	 */
+	private static class Level {
+		final int n;
+		final int[] offsets;
+		final int[] targets;
+		final double[] weights;
+		// sum of the weights of the row of each vertex
+		final double[] degrees;
+
+		Level(int n, int[] offsets, int[] targets, double[] weights) {
+			this.n = n;
+			this.offsets = offsets;
+			this.targets = targets;
+			this.weights = weights;
+			this.degrees = new double[n];
+			for (int v = 0; v < n; v++) {
+				for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+					degrees[v] += weights[e];
+				}
+			}
+		}
+
+		/*
+		 * Return the length of the longest row, the most communities a row can touch
+		 */
+		int maxRowLength() {
+			int toReturn = 0;
+			for (int v = 0; v < n; v++) {
+				toReturn = Math.max(toReturn, offsets[v + 1] - offsets[v]);
+			}
+			return toReturn;
+		}
+	}
+
+	/*
+	 * Search the communities of the graph and return them as a partition of its vertexes
+	 */
+	public Components detect() {
+		int n = graph.vertexCount();
+		double[] unitWeights = new double[graph.edgeCount()];
+		Arrays.fill(unitWeights, 1.0);
+		Level level = new Level(n, graph.offsets(), graph.targets(), unitWeights);
+		double totalWeight = graph.edgeCount();
+
+		// vertex of the current level standing for each vertex of the graph, and community of each vertex of the level
+		int[] membership = new int[n];
+		int[] community = new int[n];
+		for (int v = 0; v < n; v++) {
+			membership[v] = v;
+			community[v] = v;
+		}
+
+		ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			for (int l = 0; l < MAX_LEVELS && totalWeight > 0; l++) {
+				moveNodes(level, community, totalWeight, pool);
+				int[] refined = refine(level, community, totalWeight, pool);
+				int aggregatedNumber = relabel(refined);
+				if (aggregatedNumber == level.n) break;
+
+				// each sub community becomes a vertex of the next level, starting in the community that contains it
+				// (communities are renumbered first, there are not more communities than sub communities)
+				relabel(community);
+				int[] aggregatedCommunity = new int[aggregatedNumber];
+				for (int v = 0; v < level.n; v++) {
+					aggregatedCommunity[refined[v]] = community[v];
+				}
+				for (int v = 0; v < n; v++) {
+					membership[v] = refined[membership[v]];
+				}
+				level = aggregate(level, refined, aggregatedNumber);
+				community = aggregatedCommunity;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Community search interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Community search failed", e.getCause());
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		int[] labels = new int[n];
+		for (int v = 0; v < n; v++) {
+			labels[v] = community[membership[v]];
+		}
+		return splitDisconnected(labels);
+	}
+
+	private Components splitDisconnected(int[] communities) {
+		// Return the connected parts of the communities: the last local moves can leave a community held together
+		// by sub communities that have no edge between them, and splitting it can only increase the modularity
+		int n = communities.length;
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int[] labels = new int[n];
+		int[] queue = new int[n];
+		Arrays.fill(labels, -1);
+		int count = 0;
+		for (int s = 0; s < n; s++) {
+			if (labels[s] >= 0) continue;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = s;
+			labels[s] = count;
+			while (head < tail) {
+				int v = queue[head++];
+				for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+					int w = targets[k];
+					if (labels[w] < 0 && communities[w] == communities[v]) {
+						labels[w] = count;
+						queue[tail++] = w;
+					}
+				}
+			}
+			count++;
+		}
+		return new Components(graph, labels, count);
+	}
+
+	private static int relabel(int[] labels) {
+		// Renumber labels from 0 in order of first appearance, labels being lower than labels.length
+		// Output value: the number of distinct labels
+		int[] map = new int[labels.length];
+		Arrays.fill(map, -1);
+		int count = 0;
+		for (int i = 0; i < labels.length; i++) {
+			if (map[labels[i]] < 0) {
+				map[labels[i]] = count++;
+			}
+			labels[i] = map[labels[i]];
+		}
+		return count;
+	}
+
+	private void moveNodes(Level level, int[] community, double totalWeight, ExecutorService pool)
+			throws InterruptedException, ExecutionException {
+		// Move the vertexes between communities while the modularity increases
+		// Input value: the level, the community of each vertex (changed in place) and the total weight of the rows
+
+		int n = level.n;
+		double[] total = new double[n];
+		int[] size = new int[n];
+		for (int v = 0; v < n; v++) {
+			total[community[v]] += level.degrees[v];
+			size[community[v]]++;
+		}
+
+		int tasks = pool == null ? 1 : threads;
+		SparseWeights[] scratches = new SparseWeights[tasks];
+		int maxRowLength = level.maxRowLength();
+		for (int t = 0; t < tasks; t++) {
+			scratches[t] = new SparseWeights(maxRowLength);
+		}
+		int[] best = new int[n];
+
+		for (int round = 0; round < MAX_ROUNDS; round++) {
+			int moved = 0;
+			for (int start = 0; start < n; start += CHUNK) {
+				int end = Math.min(n, start + CHUNK);
+				// evaluate the moves of the chunk in parallel slices on the same communities
+				if (pool == null) {
+					for (int v = start; v < end; v++) {
+						best[v] = bestCommunity(level, v, community, total, size, totalWeight, scratches[0]);
+					}
+				} else {
+					List<Callable<Void>> slices = new ArrayList<Callable<Void>>();
+					int sliceSize = (end - start + tasks - 1) / tasks;
+					for (int t = 0; t < tasks; t++) {
+						int sliceStart = start + t * sliceSize;
+						int sliceEnd = Math.min(end, sliceStart + sliceSize);
+						SparseWeights scratch = scratches[t];
+						slices.add(() -> {
+							for (int v = sliceStart; v < sliceEnd; v++) {
+								best[v] = bestCommunity(level, v, community, total, size, totalWeight, scratch);
+							}
+							return null;
+						});
+					}
+					for (Future<Void> f:pool.invokeAll(slices)) {
+						f.get();
+					}
+				}
+
+				// apply the moves
+				for (int v = start; v < end; v++) {
+					if (best[v] != community[v]) {
+						total[community[v]] -= level.degrees[v];
+						size[community[v]]--;
+						total[best[v]] += level.degrees[v];
+						size[best[v]]++;
+						community[v] = best[v];
+						moved++;
+					}
+				}
+			}
+			if (moved == 0) break;
+		}
+	}
+
+	private int bestCommunity(Level level, int v, int[] community, double[] total, int[] size, double totalWeight,
+			SparseWeights scratch) {
+		// Return the community v should join: the one with the highest modularity gain, its own if none is better
+		// Algorithm implemented:
+		//		Sum the weights of the edges of v toward each neighbouring community (self loops excluded)
+		//		The gain of joining c, v being out of any community, is proportional to
+		//		  weightTo(c) - resolution * degree(v) * total(c) / totalWeight
+		//		Two singletons evaluated in the same chunk could swap communities forever, so a singleton only joins
+		//		  another singleton with a lower label
+
+		int current = community[v];
+		double k = level.degrees[v];
+		for (int e = level.offsets[v]; e < level.offsets[v + 1]; e++) {
+			int u = level.targets[e];
+			if (u != v) {
+				scratch.add(community[u], level.weights[e]);
+			}
+		}
+
+		int best = current;
+		double bestGain = scratch.weightOf(current) - resolution * k * (total[current] - k) / totalWeight;
+		boolean singleton = size[current] == 1;
+		for (int i = 0; i < scratch.size(); i++) {
+			int c = scratch.key(i);
+			if (c == current || (singleton && size[c] == 1 && c > current)) continue;
+			double gain = scratch.weight(i) - resolution * k * total[c] / totalWeight;
+			if (gain > bestGain) {
+				bestGain = gain;
+				best = c;
+			}
+		}
+		scratch.clear();
+		return best;
+	}
+
+	private int[] refine(Level level, int[] community, double totalWeight, ExecutorService pool)
+			throws InterruptedException, ExecutionException {
+		// Split each community in well connected sub communities
+		// Output value: the sub community of each vertex, labelled with one of its vertexes
+
+		int n = level.n;
+		// vertexes grouped by community, in increasing order
+		int[] memberOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			memberOffsets[community[v] + 1]++;
+		}
+		for (int c = 0; c < n; c++) {
+			memberOffsets[c + 1] += memberOffsets[c];
+		}
+		int[] members = new int[n];
+		int[] position = Arrays.copyOf(memberOffsets, n);
+		for (int v = 0; v < n; v++) {
+			members[position[community[v]]++] = v;
+		}
+
+		double[] communityTotal = new double[n];
+		for (int v = 0; v < n; v++) {
+			communityTotal[community[v]] += level.degrees[v];
+		}
+
+		// state of the sub communities, indexed by their label: every vertex starts alone
+		int[] refined = new int[n];
+		int[] refinedSize = new int[n];
+		double[] refinedTotal = Arrays.copyOf(level.degrees, n);
+		// weight of the edges from each sub community toward the rest of its community
+		double[] external = new double[n];
+		for (int v = 0; v < n; v++) {
+			refined[v] = v;
+			refinedSize[v] = 1;
+		}
+
+		// the communities are independent: each worker takes the next community not refined yet
+		AtomicInteger nextCommunity = new AtomicInteger();
+		int maxRowLength = level.maxRowLength();
+		Runnable worker = () -> {
+			SparseWeights scratch = new SparseWeights(maxRowLength);
+			for (int c = nextCommunity.getAndIncrement(); c < n; c = nextCommunity.getAndIncrement()) {
+				if (memberOffsets[c + 1] - memberOffsets[c] > 1) {
+					refineCommunity(level, c, members, memberOffsets[c], memberOffsets[c + 1], community,
+							communityTotal[c], totalWeight, refined, refinedSize, refinedTotal, external, scratch);
+				}
+			}
+		};
+		if (pool == null) {
+			worker.run();
+		} else {
+			List<Callable<Object>> workers = new ArrayList<Callable<Object>>();
+			for (int t = 0; t < threads; t++) {
+				workers.add(Executors.callable(worker));
+			}
+			for (Future<Object> f:pool.invokeAll(workers)) {
+				f.get();
+			}
+		}
+		return refined;
+	}
+
+	private void refineCommunity(Level level, int c, int[] members, int from, int to, int[] community,
+			double communityTotal, double totalWeight, int[] refined, int[] refinedSize, double[] refinedTotal,
+			double[] external, SparseWeights scratch) {
+		// Refine the community c whose vertexes are members[from] ... members[to-1]
+		// Algorithm implemented:
+		//		Compute for each vertex the weight of its edges toward the rest of the community
+		//		For each vertex still alone and well connected to the community (external weight at least
+		//		  resolution * degree * (communityTotal - degree) / totalWeight)
+		//		  join the well connected sub community of c with the highest positive modularity gain, if any
+
+		for (int i = from; i < to; i++) {
+			int v = members[i];
+			double weight = 0.0;
+			for (int e = level.offsets[v]; e < level.offsets[v + 1]; e++) {
+				int u = level.targets[e];
+				if (u != v && community[u] == c) {
+					weight += level.weights[e];
+				}
+			}
+			external[v] = weight;
+		}
+
+		for (int i = from; i < to; i++) {
+			int v = members[i];
+			if (refined[v] != v || refinedSize[v] != 1) continue;
+			double k = level.degrees[v];
+			if (external[v] < resolution * k * (communityTotal - k) / totalWeight) continue;
+
+			for (int e = level.offsets[v]; e < level.offsets[v + 1]; e++) {
+				int u = level.targets[e];
+				if (u != v && community[u] == c) {
+					scratch.add(refined[u], level.weights[e]);
+				}
+			}
+			int best = v;
+			double bestGain = 0.0;
+			double bestWeight = 0.0;
+			for (int j = 0; j < scratch.size(); j++) {
+				int t = scratch.key(j);
+				double tTotal = refinedTotal[t];
+				if (external[t] < resolution * tTotal * (communityTotal - tTotal) / totalWeight) continue;
+				double gain = scratch.weight(j) - resolution * k * tTotal / totalWeight;
+				if (gain > bestGain) {
+					bestGain = gain;
+					best = t;
+					bestWeight = scratch.weight(j);
+				}
+			}
+			scratch.clear();
+
+			if (best != v) {
+				// the edges between v and best become internal to the sub community
+				external[best] += external[v] - 2 * bestWeight;
+				refinedTotal[best] += k;
+				refinedSize[best]++;
+				refined[v] = best;
+				refinedTotal[v] = 0.0;
+				refinedSize[v] = 0;
+			}
+		}
+	}
+
+	private static Level aggregate(Level level, int[] refined, int aggregatedNumber) {
+		// Return the graph whose vertexes are the sub communities labelled from 0 to aggregatedNumber-1 in refined,
+		// the weight between two of them being the sum of the weights of the edges between their vertexes
+
+		int n = level.n;
+		int[] memberOffsets = new int[aggregatedNumber + 1];
+		for (int v = 0; v < n; v++) {
+			memberOffsets[refined[v] + 1]++;
+		}
+		for (int r = 0; r < aggregatedNumber; r++) {
+			memberOffsets[r + 1] += memberOffsets[r];
+		}
+		int[] members = new int[n];
+		int[] position = Arrays.copyOf(memberOffsets, aggregatedNumber);
+		for (int v = 0; v < n; v++) {
+			members[position[refined[v]]++] = v;
+		}
+
+		int[] offsets = new int[aggregatedNumber + 1];
+		int[] targets = new int[level.targets.length];
+		double[] weights = new double[level.targets.length];
+		// the rows of the members of a sub community can touch every other one: a single table for all of them
+		SparseWeights scratch = new SparseWeights(aggregatedNumber);
+		int edges = 0;
+		for (int r = 0; r < aggregatedNumber; r++) {
+			for (int i = memberOffsets[r]; i < memberOffsets[r + 1]; i++) {
+				int v = members[i];
+				for (int e = level.offsets[v]; e < level.offsets[v + 1]; e++) {
+					scratch.add(refined[level.targets[e]], level.weights[e]);
+				}
+			}
+			for (int j = 0; j < scratch.size(); j++) {
+				targets[edges] = scratch.key(j);
+				weights[edges++] = scratch.weight(j);
+			}
+			scratch.clear();
+			offsets[r + 1] = edges;
+		}
+		return new Level(aggregatedNumber, offsets, Arrays.copyOf(targets, edges), Arrays.copyOf(weights, edges));
+	}
+
+	/*
+	 * Return the modularity of a partition of the vertexes of a graph, each edge counting once per direction
+	 */
+	public static double modularity(Components partition) {
+		return new ComponentStats(partition).modularity();
+	}
+
+}
@@ -0,0 +1,403 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The MappedGraph class implements the Graph's interface over a GraphSnapshot file mapped in memory, so a graph larger
+ * than the JVM heap can be searched: the vertexIds, offsets and targets arrays of the compressed rows are read in
+ * place from the mapping and never copied in the heap, and the garbage collector doesn't see them.
+ *
+ * The file is mapped read only in segments of SEGMENT_INTS integers (a mapped buffer can't exceed 2GB). The pages are
+ * loaded by the operating system when first read and kept in its page cache, shared by every JVM of the host mapping
+ * the same snapshot, so several analysis processes hold a single copy of the graph.
+ *
+ * Vertexes have the dense index of the snapshot (vertexIds are sorted, indexOf is a binary search) and the neighbours
+ * of index v are target(k) for k from rowStart(v) to rowEnd(v)-1 (see RowGraph), read without allocating. Positions
+ * and the edge count are long, as the 64 bit offsets of the snapshot, so a graph can have billions of edges while the
+ * number of vertexes stays below 2^31. The searches of this class (connected components, BFS, egonets) keep in the
+ * heap only arrays of one integer per vertex, or the result.
+ *
+ * The graph is read only; snapshots store undirected graphs (each edge in both directions), so the strongly connected
+ * components returned by getSCCs are the connected components.
+ **/
+
+public class MappedGraph implements Graph, RowGraph {
+
+	// integers per mapped segment
+	private static final int SEGMENT_SHIFT = 28;
+	private static final int SEGMENT_INTS = 1 << SEGMENT_SHIFT;
+
+	// the mapped file as little endian integers, from the first integer of the header
+	private final IntBuffer[] segments;
+	// number of vertexes and of directed edges, and position in the file of the first integer of each array (offsets
+	// take two integers each, the low one first)
+	private final int n;
+	private final long m;
+	private final long idsStart;
+	private final long offsetsStart;
+	private final long targetsStart;
+	// number of connected components in the data set the graph was extracted from
+	private final int componentsNumber;
+
+	private MappedGraph(IntBuffer[] segments, long[] header) {
+		this.segments = segments;
+		this.componentsNumber = (int) header[2];
+		this.n = (int) header[3];
+		this.m = header[4];
+		this.idsStart = GraphSnapshot.HEADER_INTS;
+		this.offsetsStart = idsStart + n;
+		this.targetsStart = offsetsStart + 2L * (n + 1);
+	}
+
+	/*
+	 * Map the snapshot written by GraphSnapshot.write in the file named fileName; throws an IOException if the file is
+	 * not a snapshot of a supported version or if it is truncated
+	 */
+	public static MappedGraph open(String fileName) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			long[] header = GraphSnapshot.readHeader(channel, fileName);
+			// the mappings stay valid after the channel is closed
+			long ints = channel.size() / 4;
+			IntBuffer[] segments = new IntBuffer[(int) ((ints + SEGMENT_INTS - 1) / SEGMENT_INTS)];
+			for (int s = 0; s < segments.length; s++) {
+				long start = (long) s * SEGMENT_INTS;
+				long length = Math.min(SEGMENT_INTS, ints - start);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, 4L * start, 4L * length)
+						.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			}
+			MappedGraph toReturn = new MappedGraph(segments, header);
+			if (toReturn.rowStart(0) != 0 || toReturn.rowStart(toReturn.n) != toReturn.m) {
+				throw new IOException(fileName + " is truncated or corrupted");
+			}
+			return toReturn;
+		}
+	}
+
+	private int intAt(long position) {
+		// Return the integer in position of the file, counting integers
+		return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & (SEGMENT_INTS - 1)));
+	}
+
+	/*
+	 * Return the number of connected components in the data set the snapshot was extracted from
+	 */
+	public int getComponentsNumber() {
+		return componentsNumber;
+	}
+
+	/*
+	 * Return the number of vertexes in the graph
+	 */
+	public int vertexCount() {
+		return n;
+	}
+
+	/*
+	 * Return the number of directed edges in the graph
+	 */
+	public long edgeCount() {
+		return m;
+	}
+
+	/*
+	 * Return the dense index of the vertex named id, or -1 if the vertex doesn't belong to the graph
+	 */
+	public int indexOf(int id) {
+		int low = 0;
+		int high = n - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int value = idOf(middle);
+			if (value < id) {
+				low = middle + 1;
+			} else if (value > id) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Return the name of the vertex with the given dense index
+	 */
+	public int idOf(int index) {
+		return intAt(idsStart + index);
+	}
+
+	private long offsetAt(int index) {
+		// Return the 64 bit offset of the vertex index
+		long position = offsetsStart + 2L * index;
+		return (intAt(position) & 0xFFFFFFFFL) | ((long) intAt(position + 1) << 32);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.RowGraph#rowStart(int)
+	 */
+	@Override
+	public long rowStart(int index) {
+		return offsetAt(index);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.RowGraph#rowEnd(int)
+	 */
+	@Override
+	public long rowEnd(int index) {
+		return offsetAt(index + 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.RowGraph#target(long)
+	 */
+	@Override
+	public int target(long position) {
+		return intAt(targetsStart + position);
+	}
+
+	public int degree(int index) {
+		return (int) (rowEnd(index) - rowStart(index));
+	}
+
+	private boolean rowContains(int index, int target) {
+		// binary search of target in the sorted row of index
+		long low = rowStart(index);
+		long high = rowEnd(index) - 1;
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+			int value = target(middle);
+			if (value < target) {
+				low = middle + 1;
+			} else if (value > target) {
+				high = middle - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Visit the graph in breadth first order from the vertex index source, reusing the caller's arrays of vertexCount
+	 * integers so that repeated searches don't allocate
+	 * Output value: distances holds the number of edges from source to each vertex index, -1 if not reached, and queue
+	 * the vertexes reached in visit order; the return value is the number of vertexes reached
+	 */
+	public int bfs(int source, int[] distances, int[] queue) {
+		long start = Metrics.start();
+		Arrays.fill(distances, -1);
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = source;
+		distances[source] = 0;
+		long edges = 0;
+		while (head < tail) {
+			int v = queue[head++];
+			long end = rowEnd(v);
+			for (long k = rowStart(v); k < end; k++) {
+				int w = target(k);
+				if (distances[w] < 0) {
+					distances[w] = distances[v] + 1;
+					queue[tail++] = w;
+				}
+			}
+			edges += end - rowStart(v);
+		}
+		Metrics.stop(Metrics.Phase.BFS_SWEEP, start);
+		Metrics.count(Metrics.Counter.NODES_VISITED, tail);
+		Metrics.count(Metrics.Counter.EDGES_TRAVERSED, edges);
+		return tail;
+	}
+
+	/*
+	 * Return the number of edges from the vertex index source to each vertex index, -1 for the vertexes not reached
+	 */
+	public int[] bfs(int source) {
+		int[] distances = new int[n];
+		bfs(source, distances, new int[n]);
+		return distances;
+	}
+
+	/*
+	 * Return the connected component of each vertex index, numbered from 0 in order of their lowest vertex index -
+	 * the number of components is the highest label plus one
+	 */
+	public int[] connectedComponents() {
+		int[] labels = new int[n];
+		RowGraph.labelComponents(this, labels, new int[n]);
+		return labels;
+	}
+
+	/*
+	 * Return a list of subgraphs connected components in the graph, copied in the heap
+	 * Prefer connectedComponents on large graphs, it returns only the component of each vertex
+	 */
+	public LinkedList<CapGraph> getCCs() {
+		int[] labels = connectedComponents();
+		int count = 0;
+		for (int label:labels) {
+			count = Math.max(count, label + 1);
+		}
+		CapGraph[] graphs = new CapGraph[count];
+		for (int c = 0; c < count; c++) {
+			graphs[c] = new CapGraph();
+		}
+		for (int v = 0; v < n; v++) {
+			graphs[labels[v]].addVertex(idOf(v));
+		}
+		for (int v = 0; v < n; v++) {
+			for (long k = rowStart(v); k < rowEnd(v); k++) {
+				graphs[labels[v]].addEdge(idOf(v), idOf(target(k)));
+			}
+		}
+		return new LinkedList<CapGraph>(Arrays.asList(graphs));
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getSCCs()
+	 */
+	@Override
+	public List<Graph> getSCCs() {
+		return new ArrayList<Graph>(getCCs());
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getEgonet(int)
+	 *
+	 * The neighbours of the center are checked with a binary search in its sorted row, so no array of the size of the
+	 * graph is allocated
+	 */
+	@Override
+	public Graph getEgonet(int center) {
+		// return new graph with center, directly connected vertices and the edges between them, as CSRGraph does
+		CapGraph egoGraph = new CapGraph();
+		int c = indexOf(center);
+		if (c < 0) {
+			// return null graph is center doesn't belong to graph
+			return egoGraph;
+		}
+
+		egoGraph.addVertex(center);
+		long start = rowStart(c);
+		long end = rowEnd(c);
+		for (long k = start; k < end; k++) {
+			// parallel edges are next to each other in the sorted row
+			if (k == start || target(k) != target(k - 1)) {
+				egoGraph.addVertex(idOf(target(k)));
+			}
+		}
+		for (long k = start; k < end; k++) {
+			int v = target(k);
+			egoGraph.addEdge(center, idOf(v));
+			// add the edges of each neighbour only once even if it appears more than once in the center's row
+			if (k > start && v == target(k - 1)) continue;
+			for (long j = rowStart(v); j < rowEnd(v); j++) {
+				int w = target(j);
+				if (w == c || rowContains(c, w)) {
+					egoGraph.addEdge(idOf(v), idOf(w));
+				}
+			}
+		}
+		return egoGraph;
+	}
+
+	/*
+	 * Return the list of neighbours of node, null if node doesn't belong to the graph - prefer rowStart, rowEnd and
+	 * target, that don't allocate
+	 */
+	public ArrayList<Integer> getNeighbour(Integer node) {
+		int v = indexOf(node);
+		if (v < 0) return null;
+		ArrayList<Integer> toReturn = new ArrayList<Integer>(degree(v));
+		for (long k = rowStart(v); k < rowEnd(v); k++) {
+			toReturn.add(idOf(target(k)));
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the set of vertexes in the graph, copied in the heap
+	 */
+	public Set<Integer> getVertices() {
+		Set<Integer> toReturn = new HashSet<Integer>();
+		for (int v = 0; v < n; v++) {
+			toReturn.add(idOf(v));
+		}
+		return toReturn;
+	}
+
+	public int GetVertexesNumber() {
+		return n;
+	}
+
+	public long GetEdgesNumber() {
+		return m;
+	}
+
+	/*
+	 * Copy the graph in the heap as a CSRGraph, if its edges fit in a Java array
+	 */
+	public CSRGraph toCSRGraph() {
+		if (m > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("A graph with " + m + " edges doesn't fit in a CSRGraph");
+		}
+		int[] ids = new int[n];
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[(int) m];
+		for (int v = 0; v < n; v++) {
+			ids[v] = idOf(v);
+			offsets[v + 1] = (int) rowEnd(v);
+		}
+		for (int k = 0; k < m; k++) {
+			targets[k] = target(k);
+		}
+		return new CSRGraph(ids, offsets, targets);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addVertex(int)
+	 */
+	@Override
+	public void addVertex(int num) {
+		throw new UnsupportedOperationException("A mapped graph is read only, modify a copy from toCSRGraph");
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addEdge(int, int)
+	 */
+	@Override
+	public void addEdge(int from, int to) {
+		throw new UnsupportedOperationException("A mapped graph is read only, modify a copy from toCSRGraph");
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#exportGraph()
+	 */
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		HashMap<Integer, HashSet<Integer>> toReturn = new HashMap<Integer, HashSet<Integer>>();
+		for (int v = 0; v < n; v++) {
+			HashSet<Integer> neighbours = new HashSet<Integer>();
+			for (long k = rowStart(v); k < rowEnd(v); k++) {
+				neighbours.add(idOf(target(k)));
+			}
+			toReturn.put(idOf(v), neighbours);
+		}
+		return toReturn;
+	}
+}
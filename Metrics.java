@@ -0,0 +1,364 @@
+package graph;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The Metrics class collects the running time of the phases of the searches of this project and counts the work they
+ * do, so that they can be monitored instead of reading the times printed by MinCut and denseComunities:
+ *		a histogram per Phase of the nanoseconds taken by each execution, in buckets of powers of two
+ *		a counter per Counter (nodes visited, edges traversed)
+ * Histograms and counters are LongAdder based, so threads record without contending on a lock.
+ *
+ * The metrics are read through the Metrics MXBean (registerMBean, name OBJECT_NAME, registered by the main methods of
+ * MinCut, denseComunities and GraphBenchmark) or pushed to the reporters added with addReporter, on demand (report)
+ * or periodically (startReporting).
+ *
+ * Instrumented code calls start before a phase and stop after it. The instrumentation is switched off for the whole
+ * JVM with -Dgraph.metrics.disabled=true: ENABLED is a constant, so the JIT removes the calls from the hot paths.
+ **/
+
+public class Metrics {
+
+	public static final boolean ENABLED = !Boolean.getBoolean("graph.metrics.disabled");
+	public static final String OBJECT_NAME = "graph:type=Metrics";
+
+	/*
+	 * Phases timed by the searches
+	 */
+	public enum Phase {
+		LOAD,				// GraphLoader.loadGraph
+		COMPONENTS,			// connected and strongly connected components of a CSRGraph
+		BFS_SWEEP,			// BFS from a source node (denseComunities, EdgeBetweenness)
+		FLOW_ALLOCATION,	// allocation of the flow units or dependencies of a BFS tree (Flows, EdgeBetweenness)
+		EDGE_REMOVAL,		// removal of the most traversed edge (denseComunities)
+		CONTRACTION,		// a Kager's iteration or a Karger-Stein contraction (MinCut)
+		ITERATION			// an iteration of seachComponentsIterations, a findMinCut trial or a Karger-Stein repetition
+	}
+
+	/*
+	 * Amounts of work counted by the searches
+	 */
+	public enum Counter {
+		NODES_VISITED,
+		EDGES_TRAVERSED
+	}
+
+	/*
+	 * Histogram of non negative values (nanoseconds) in buckets of powers of two: bucket b counts the values in
+	 * [2^(b-1), 2^b), bucket 0 the value 0. Percentiles are approximated by the upper bound of their bucket.
+	 */
+	public static class Histogram {
+		private static final int BUCKETS = 64;
+
+		private final LongAdder[] buckets = new LongAdder[BUCKETS];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		public Histogram() {
+			for (int b = 0; b < BUCKETS; b++) {
+				buckets[b] = new LongAdder();
+			}
+		}
+
+		public void record(long value) {
+			value = Math.max(0, value);
+			buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+			count.increment();
+			sum.add(value);
+			min.accumulate(value);
+			max.accumulate(value);
+		}
+
+		public long count() {
+			return count.sum();
+		}
+
+		public long sum() {
+			return sum.sum();
+		}
+
+		/*
+		 * Return the smallest value recorded, 0 if none
+		 */
+		public long min() {
+			return count() == 0 ? 0 : min.get();
+		}
+
+		public long max() {
+			return max.get();
+		}
+
+		public long mean() {
+			long n = count();
+			return n == 0 ? 0 : sum() / n;
+		}
+
+		/*
+		 * Return the value under which the given fraction of the values recorded falls
+		 */
+		public long percentile(double fraction) {
+			long n = count();
+			if (n == 0) return 0;
+			long rank = Math.max(1, (long) Math.ceil(fraction * n));
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += buckets[b].sum();
+				if (seen >= rank) {
+					return b == 0 ? 0 : Math.min(max(), (1L << b) - 1);
+				}
+			}
+			return max();
+		}
+
+		public void reset() {
+			for (LongAdder bucket:buckets) {
+				bucket.reset();
+			}
+			count.reset();
+			sum.reset();
+			min.reset();
+			max.reset();
+		}
+
+		public String toString() {
+			return "count=" + count() + " min=" + min() + " mean=" + mean() + " p50=" + percentile(0.5)
+					+ " p99=" + percentile(0.99) + " max=" + max();
+		}
+	}
+
+	/*
+	 * Destination of the metrics pushed by report
+	 */
+	public interface Reporter {
+		void report(Map<Phase, Histogram> phases, Map<Counter, Long> counters);
+	}
+
+	/*
+	 * Metrics exposed through JMX, values in nanoseconds by phase name
+	 */
+	public interface MetricsMXBean {
+		boolean isEnabled();
+		Map<String, Long> getCounts();
+		Map<String, Long> getMeanNanos();
+		Map<String, Long> getP99Nanos();
+		Map<String, Long> getMaxNanos();
+		Map<String, Long> getCounters();
+		void reset();
+	}
+
+	/*
+	 * Reporter printing the phases executed at least once and the counters on the standard output
+	 */
+	public static final Reporter CONSOLE = (phases, counters) -> {
+		for (Map.Entry<Phase, Histogram> phase:phases.entrySet()) {
+			if (phase.getValue().count() > 0) {
+				System.out.println("   " + phase.getKey() + " (nsec): " + phase.getValue());
+			}
+		}
+		System.out.println("   Counters: " + counters);
+	};
+
+	private static final EnumMap<Phase, Histogram> PHASES = new EnumMap<Phase, Histogram>(Phase.class);
+	private static final EnumMap<Counter, LongAdder> COUNTERS = new EnumMap<Counter, LongAdder>(Counter.class);
+	private static final List<Reporter> REPORTERS = new CopyOnWriteArrayList<Reporter>();
+	private static ScheduledExecutorService scheduler = null;
+
+	static {
+		for (Phase phase:Phase.values()) {
+			PHASES.put(phase, new Histogram());
+		}
+		for (Counter counter:Counter.values()) {
+			COUNTERS.put(counter, new LongAdder());
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/*
+	 * Return the start time of a phase to pass to stop, 0 when the metrics are disabled
+	 */
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/*
+	 * Record the time elapsed since start in the histogram of phase
+	 */
+	public static void stop(Phase phase, long start) {
+		if (ENABLED) {
+			PHASES.get(phase).record(System.nanoTime() - start);
+		}
+	}
+
+	/*
+	 * Record a duration of phase measured by the caller
+	 */
+	public static void record(Phase phase, long nanos) {
+		if (ENABLED) {
+			PHASES.get(phase).record(nanos);
+		}
+	}
+
+	/*
+	 * Add amount to counter
+	 */
+	public static void count(Counter counter, long amount) {
+		if (ENABLED) {
+			COUNTERS.get(counter).add(amount);
+		}
+	}
+
+	public static Histogram histogram(Phase phase) {
+		return PHASES.get(phase);
+	}
+
+	public static long counter(Counter counter) {
+		return COUNTERS.get(counter).sum();
+	}
+
+	public static void reset() {
+		for (Histogram histogram:PHASES.values()) {
+			histogram.reset();
+		}
+		for (LongAdder counter:COUNTERS.values()) {
+			counter.reset();
+		}
+	}
+
+	public static void addReporter(Reporter reporter) {
+		REPORTERS.add(reporter);
+	}
+
+	public static void removeReporter(Reporter reporter) {
+		REPORTERS.remove(reporter);
+	}
+
+	/*
+	 * Push the current metrics to all reporters
+	 */
+	public static void report() {
+		Map<Phase, Histogram> phases = Collections.unmodifiableMap(PHASES);
+		Map<Counter, Long> counters = new EnumMap<Counter, Long>(Counter.class);
+		for (Counter counter:Counter.values()) {
+			counters.put(counter, counter(counter));
+		}
+		for (Reporter reporter:REPORTERS) {
+			reporter.report(phases, counters);
+		}
+	}
+
+	/*
+	 * Push the metrics to all reporters every period msec on a daemon thread, until the returned future is cancelled
+	 */
+	public static synchronized ScheduledFuture<?> startReporting(long period) {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "graph-metrics-reporter");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return scheduler.scheduleAtFixedRate(Metrics::report, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Register the metrics in the platform MBean server under OBJECT_NAME, if not registered yet
+	 */
+	public static synchronized void registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name)) {
+			server.registerMBean(new Bean(), name);
+		}
+	}
+
+	/*
+	 * Register the metrics in the platform MBean server when the instrumentation is enabled, called by the main
+	 * methods so that the metrics can be read with a JMX console while they run - a failure is printed and the
+	 * program goes on without the MBean
+	 */
+	public static void registerMBeanIfEnabled() {
+		if (!ENABLED) {
+			return;
+		}
+		try {
+			registerMBean();
+		} catch (JMException e) {
+			System.err.println("Metrics MBean not registered: " + e.getMessage());
+		}
+	}
+
+	private static class Bean implements MetricsMXBean {
+		private interface Statistic {
+			long of(Histogram histogram);
+		}
+
+		private static Map<String, Long> byPhase(Statistic statistic) {
+			Map<String, Long> toReturn = new LinkedHashMap<String, Long>();
+			for (Map.Entry<Phase, Histogram> phase:PHASES.entrySet()) {
+				toReturn.put(phase.getKey().name(), statistic.of(phase.getValue()));
+			}
+			return toReturn;
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return ENABLED;
+		}
+
+		@Override
+		public Map<String, Long> getCounts() {
+			return byPhase(Histogram::count);
+		}
+
+		@Override
+		public Map<String, Long> getMeanNanos() {
+			return byPhase(Histogram::mean);
+		}
+
+		@Override
+		public Map<String, Long> getP99Nanos() {
+			return byPhase(h -> h.percentile(0.99));
+		}
+
+		@Override
+		public Map<String, Long> getMaxNanos() {
+			return byPhase(Histogram::max);
+		}
+
+		@Override
+		public Map<String, Long> getCounters() {
+			Map<String, Long> toReturn = new LinkedHashMap<String, Long>();
+			for (Counter counter:Counter.values()) {
+				toReturn.put(counter.name(), counter(counter));
+			}
+			return toReturn;
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+	}
+}
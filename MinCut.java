@@ -2,9 +2,17 @@ package graph;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
-import util.GraphLoader;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -16,20 +24,44 @@ import util.GraphLoader;
 * The Karger’s removes edges at random and merge its two vertexes in a single node till a single couple of nodes are left in the graph.
 * The number of links between these two nodes is a potential cut and it is the minimum cut only if no edge from a minimum cut set was
 * removed in the process.
+* The merges are recorded in a UnionFind over the vertexes while visiting the edges in random order, so the graph is
+* never modified and an iteration costs close to linear time in the number of edges.
+* findExactMinCut returns instead the exact minimum cut computed with the deterministic Stoer-Wagner algorithm.
+* findMinCut shares the iterations between setThreads threads, each iteration seeded from setSeed, and can stop
+* early (setEarlyStop) when the smallest cut doesn't improve for a number of iterations or a time budget is spent.
 *
-* MinCut class uses the class CapGraph.java to represent the graph under investigation and leverage its method "getCCs" to
-* divide the graph in connected components (or communities in this exercise). 
+* MinCut class uses the class UndirectedGraph.java to represent the graph under investigation, storing each friendship once,
+* and reads the end points of the edges by edge id straight from its rows, without copies.
 * This class assumes the graph to be un-directed because it focuses on a facebook's friend graph data set. 
 **/
 
 public class MinCut {
 
+	// contracted graphs with at most this number of vertexes are cut exactly on their adjacency matrix (see
+	// StoerWagner.denseMinCut)
+	private static final int SMALL_GRAPH=32;
+
 	// stores the graph investigated by this class
-	private CapGraph graph= new CapGraph();
-	// stores a list with the time required to run each iteration of the algorithm
-	private LinkedList<Long> debugTimes= new LinkedList<Long>();
-	// store a list with the number of edges in the minimum cuts discovered
-	private LinkedList<Integer> minCutList= new LinkedList<Integer>();
+	private UndirectedGraph graph= new UndirectedGraph();
+	// number of vertexes and edges (friendships) of the graph, the edges having ids from 0 to edgesNumber-1
+	private int verticesNumber=0;
+	private int edgesNumber=0;
+	// random generator used to shuffle the edges in the Karger-Stein contractions
+	private Random random=new Random();
+	// seed of the Kager's iterations: iteration n shuffles the edges with a generator seeded by seed and n, so a search
+	// with the same seed and the same number of iterations records the same cuts whatever the number of threads
+	private long seed=System.nanoTime();
+	// number of threads sharing the Kager's iterations
+	private int threads=Runtime.getRuntime().availableProcessors();
+	// early stop of findMinCut: stop after patience iterations without a smaller cut or after timeBudget msec (0 = never)
+	private int patience=0;
+	private long timeBudget=0;
+	// limits of the Karger-Stein recursion: maximum depth and maximum number of edges held by the contracted graphs
+	// along the recursion path; when a limit is reached the graph is contracted straight to two vertexes
+	private int maxRecursionDepth=64;
+	private long maxRecursionEdges=Long.MAX_VALUE;
+	// smallest cut found by the running Karger-Stein search, Integer.MAX_VALUE before the first cut
+	private volatile int bestCut=Integer.MAX_VALUE;
 
 	
 	public MinCut(String DataSet) {
@@ -37,101 +69,424 @@ public class MinCut {
 		// to perform the min cut search if the graph is not fully connected
 		// Input value: a string with the path and name of the file with the graph definition
 		
-		// temporary graph used to search the largest connected component subgraph 
-		CapGraph tempGraph= new CapGraph();
-		// loadGraph utility load a text file when each raw represent an edge from source node to destination node as two integers
-		GraphLoader.loadGraph(tempGraph, DataSet);
+		this(GraphSnapshot.load(DataSet), true);
+	}
 
-		// retrieve a list of the connected components subgraph in the initial graph
-		LinkedList<CapGraph> sccList=tempGraph.getCCs();
-		int higerEdges=0;
+	public MinCut(GraphSnapshot snapshot) {
+		// The class constructor takes the graph from a snapshot already loaded, without printing anything, as
+		// GraphBenchmark does to keep its table of results clean
+		// Input value: the snapshot storing the connected component with more edges of a data set
+		
+		this(snapshot, false);
+	}
 
-		// iterate the list of connected subgraph and select the one with more edges to perform the min cut search on 
-		for (CapGraph g: sccList) {
-			if (g.GetEdgesNumber()>higerEdges) {
-				higerEdges=g.GetEdgesNumber();
-				graph=g;
-			}
-		}
+	private MinCut(GraphSnapshot snapshot, boolean verbose) {
+		// Input value: the snapshot of the data set, null if it could not be read
+		// Input value: true to visualize information about the graph selected for the search
 		
-		// visualize information about the subgraph selected for the search
-		System.out.println("Data set proposed has "+sccList.size()+" connected components");
-		System.out.println("Selected componet with larger number of vertexes");
-		System.out.println("  Number of Vertexex: "+graph.GetVertexesNumber());
-		System.out.println("  Number of Edges: "+graph.GetEdgesNumber()/2);			
+		if (snapshot==null) {
+			return;
+		}
+		// the edges are stored once per friendship with a canonical id, so the graph is its own list of edges
+		graph=new UndirectedGraph(snapshot.getGraph());
+		verticesNumber=graph.vertexCount();
+		edgesNumber=graph.edgeCount();
+
+		if (verbose) {
+			// visualize information about the subgraph selected for the search
+			System.out.println("Data set proposed has "+snapshot.getComponentsNumber()+" connected components");
+			System.out.println("Selected componet with larger number of vertexes");
+			System.out.println("  Number of Vertexex: "+graph.GetVertexesNumber());
+			System.out.println("  Number of Edges: "+graph.edgeCount());
+		}
 	}
 	
 
-	private Integer Kager(CapGraph workingGraph){
+	public void setSeed(long seed){
+		this.seed=seed;
+		this.random=new Random(seed);
+	}
+
+	public void setThreads(int threads){
+		this.threads=Math.max(1, threads);
+	}
+
+	public void setEarlyStop(int patience, long timeBudget){
+		// Set when findMinCut stops before running all the requested iterations
+		// Input value: the number of iterations completed without finding a smaller cut after which to stop, 0 to never stop
+		// Input value: the msec after which to stop, 0 to never stop
+		this.patience=Math.max(0, patience);
+		this.timeBudget=Math.max(0, timeBudget);
+	}
+
+	private Integer Kager(UnionFind superVertexes, int[] order, Random random){
 		// The Kager's method retrieves the number of edges in a set that if removed, divide the graph in two disjointed components
 
-		// Input value: a CapGraph graph to search the minimum cut on
+		// Input value: a UnionFind over the graph's vertexes, used to record which vertexes have been merged
+		// Input value: an array with a slot per edge, used as working copy of the edge order
+		// Input value: the random generator used to shuffle the edges
 		// Output value: the number o edges in the discovered cut
-		// Side effect: collapses the workingGraph in two nodes with the edges between them representing the discovered cut
+		// Side effect: superVertexes holds the two sets of vertexes separated by the discovered cut
 				
 		// The Karger’s algorithm can be summarized as:
 		//		While there are more than two vertexes in the graph
 		//			Pick a random edge in the graph and merge its two vertexes in a single (contracting the graph)
-		//			Update all references to the original nodes to the single collapsed node
-		//			Remove self loop created by merging two nodes
 		//		Return the links between the last two vertexes as representation of the discovered cut
+		// Picking the edges in the order of a random permutation is the same as picking a random edge among the ones
+		// left at each step, because edges that became self loops of a merged vertex are skipped, so the edges are
+		// shuffled once and the merged vertexes are recorded in a union-find instead of rewriting the adjacency lists
 		
-		Integer fromNode;
-		Integer toNode;
+		long startTime=Metrics.start();
+		// the higher end point of each edge id and the edge ids of each lower end point, as stored in the graph
+		int[] upper=graph.upper();
+		int[] firstEdge=graph.firstEdge();
+		superVertexes.reset();
+		for (int i=0;i<order.length;i++) {
+			order[i]=i;
+		}
+		// Fisher-Yates shuffle of the edges
+		for (int i=order.length-1;i>0;i--) {
+			int j=random.nextInt(i+1);
+			int swap=order[i];
+			order[i]=order[j];
+			order[j]=swap;
+		}
 		
 		// iterate collapsing nodes in the graph until only two nodes are left
-		while (workingGraph.GetVertexesNumber()>2) {			
-			// retrieve a random node in the graph
-			fromNode=workingGraph.getOneVertice();
-			// retrieve a random edge from the random node
-			toNode=workingGraph.getOneNeighbor(fromNode);
-			// merge in the identified node and its neighbor
-			workingGraph.mergeVertexes(fromNode, toNode);	
+		for (int i=0;i<order.length && superVertexes.setsNumber()>2;i++) {
+			// merge the end points of the next edge, if they are not already in the same merged vertex
+			superVertexes.union(graph.edgeFrom(order[i]), upper[order[i]]);
 		}
-		// return the number of edges between the two last nodes - divided by 2 because working with undirected graph
-		return (workingGraph.GetEdgesNumber()/2);
+		
+		// return the number of edges between the two last nodes
+		int cut=0;
+		for (int u=0;u<verticesNumber;u++) {
+			for (int e=firstEdge[u];e<firstEdge[u+1];e++) {
+				if (superVertexes.find(u)!=superVertexes.find(upper[e])) {
+					cut++;
+				}
+			}
+		}
+		Metrics.stop(Metrics.Phase.CONTRACTION, startTime);
+		return cut;
 	}
 	
-	public int findMinCut(int iterations){
-		int cutToReturn=0;
-		long startTime, endTime, sumTime, time, minTime, maxTime;
-				
-		for (int n=0;n<iterations;n++) {
-			// create a temporary copy of the class's CapGrapgh, keeping the original for new iterations
-			// Required because the Kager's method updates the graph under investigation			
-			CapGraph workingGraph=graph.clone(); 			
+	int runKager(Random random){
+		// Run a single Kager's iteration with its own working structures, as measured by GraphBenchmark
+		// Output value: the number o edges in the discovered cut
+		return Kager(new UnionFind(verticesNumber), new int[edgesNumber], random);
+	}
 
-			startTime = System.currentTimeMillis();
-			
-			// apply the Kager on the temporary working graph and store the returned number of edges in a list for later analysis
-			minCutList.add(Kager(workingGraph));
-			endTime   = System.currentTimeMillis();
+	/*
+	 * A multigraph contracted by the Karger-Stein recursion: n vertexes from 0 to n-1 and the edges between them,
+	 * without self loops, the parallel edges between two vertexes merged in a single edge weighted by their number
+	 */
+	private static class Multigraph {
+		final int n;
+		final int[] from;
+		final int[] to;
+		final int[] weight;
 
-			// record the time used to run Kager in a list for later analysis
-			debugTimes.add(endTime - startTime);						
+		Multigraph(int n, int[] from, int[] to, int[] weight) {
+			this.n=n;
+			this.from=from;
+			this.to=to;
+			this.weight=weight;
 		}
 
-		// visualize the number of cut and running time for each iteration
-		System.out.println("   Cuts recorded: "+minCutList);
-		System.out.println("   Running time recorded (msec): "+debugTimes);
+		int totalWeight() {
+			int total=0;
+			for (int w:weight) {
+				total+=w;
+			}
+			return total;
+		}
+	}
+
+	public void setRecursionLimits(int maxDepth, long maxEdges){
+		// Set the limits of the Karger-Stein recursion
+		// Input value: the maximum recursion depth
+		// Input value: the maximum number of edges held at the same time by the contracted graphs of a recursion path
+		maxRecursionDepth=Math.max(0, maxDepth);
+		maxRecursionEdges=Math.max(0, maxEdges);
+	}
+
+	public int getBestCut(){
+		// Return the smallest cut found so far by findMinCutKargerStein, also while it is running in another thread
+		return bestCut;
+	}
+
+	private static Multigraph merge(int n, int[] from, int[] to, int[] weight, int m){
+		// Merge the parallel edges of the first m edges between n vertexes, dropping the self loops, in O(n+m) time
+		// Input value: the number of vertexes, the end points and weights of the edges and the number of edges
+		// Output value: the multigraph with an edge (a, b), a<b, for each couple of adjacent vertexes
+
+		// bucket the edges by their lower end point (counting sort)
+		int[] start=new int[n+1];
+		for (int e=0;e<m;e++) {
+			if (from[e]!=to[e]) {
+				start[Math.min(from[e], to[e])+1]++;
+			}
+		}
+		for (int v=0;v<n;v++) {
+			start[v+1]+=start[v];
+		}
+		int[] bucket=new int[start[n]];
+		int[] fill=Arrays.copyOf(start, n);
+		for (int e=0;e<m;e++) {
+			if (from[e]!=to[e]) {
+				bucket[fill[Math.min(from[e], to[e])]++]=e;
+			}
+		}
+
+		// sum the weights toward each higher end point of a bucket, remembering the end points touched
+		int[] sum=new int[n];
+		int[] touched=new int[n];
+		int[] mergedFrom=new int[bucket.length];
+		int[] mergedTo=new int[bucket.length];
+		int[] mergedWeight=new int[bucket.length];
+		int merged=0;
+		for (int a=0;a<n;a++) {
+			int touchedNumber=0;
+			for (int k=start[a];k<start[a+1];k++) {
+				int e=bucket[k];
+				int b=Math.max(from[e], to[e]);
+				if (sum[b]==0) {
+					touched[touchedNumber++]=b;
+				}
+				sum[b]+=weight[e];
+			}
+			for (int i=0;i<touchedNumber;i++) {
+				int b=touched[i];
+				mergedFrom[merged]=a;
+				mergedTo[merged]=b;
+				mergedWeight[merged++]=sum[b];
+				sum[b]=0;
+			}
+		}
+		return new Multigraph(n, Arrays.copyOf(mergedFrom, merged), Arrays.copyOf(mergedTo, merged),
+				Arrays.copyOf(mergedWeight, merged));
+	}
+
+	private Multigraph contract(Multigraph g, int target){
+		// Contract g merging the end points of random edges until target vertexes are left
+		// Input value: the multigraph to contract and the number of vertexes to leave
+		// Output value: the contracted multigraph, with the vertexes renumbered, the self loops removed and the
+		// parallel edges merged
+		
+		long startTime=Metrics.start();
+		UnionFind superVertexes=new UnionFind(g.n);
+		int m=g.from.length;
+		// picking a random edge of the multigraph, each parallel edge with the same probability, is the same as
+		// visiting the weighted edges by increasing exponential keys of rate weight: the keys are sorted with the edge
+		// in the low bits, the float precision of the keys being far beyond the randomness needed
+		long[] order=new long[m];
+		for (int e=0;e<m;e++) {
+			float key=(float)(-Math.log(1.0-random.nextDouble())/g.weight[e]);
+			order[e]=((long)Float.floatToIntBits(key)<<32)|e;
+		}
+		Arrays.sort(order);
+		for (int i=0;i<m && superVertexes.setsNumber()>target;i++) {
+			int e=(int)order[i];
+			superVertexes.union(g.from[e], g.to[e]);
+		}
+		
+		// renumber the merged vertexes and merge the edges between them
+		int[] label=new int[g.n];
+		Arrays.fill(label, -1);
+		int n=0;
+		for (int v=0;v<g.n;v++) {
+			int root=superVertexes.find(v);
+			if (label[root]<0) {
+				label[root]=n++;
+			}
+		}
+		int[] from=new int[m];
+		int[] to=new int[m];
+		for (int e=0;e<m;e++) {
+			from[e]=label[superVertexes.find(g.from[e])];
+			to[e]=label[superVertexes.find(g.to[e])];
+		}
+		Multigraph contracted=merge(n, from, to, g.weight, m);
+		Metrics.stop(Metrics.Phase.CONTRACTION, startTime);
+		return contracted;
+	}
+
+	private int recursiveContraction(Multigraph g, int depth, long heldEdges){
+		// The Karger-Stein recursion returns a possible cut of g, which is the minimum cut with probability Omega(1/log n)
+		// Input value: the multigraph to cut, with at least two vertexes, the recursion depth and the number of edges
+		// held by the callers
+		// Output value: the number of edges in the discovered cut, Integer.MAX_VALUE if interrupted
 		
+		// The Karger-Stein algorithm can be summarized as:
+		//		If the graph has at most SMALL_GRAPH vertexes, return its exact minimum cut
+		//		Otherwise twice:
+		//			Contract the graph to n/sqrt(2)+1 vertexes - a minimum cut survives with probability at least 1/2
+		//			Search recursively a cut in the contracted graph
+		//		Return the smaller of the two cuts
+		// The contractions never go below target>=2 vertexes; a contracted graph left with more than target vertexes
+		// has run out of edges, so it is disconnected and its cut is 0
 		
-		minTime=debugTimes.peek();
-		maxTime=minTime;
-		sumTime=0;
+		if (Thread.currentThread().isInterrupted()) return Integer.MAX_VALUE;
 		
-		// calculate the minmum, maximum and average time require to implement the iterations
-		Iterator TimeIterator = debugTimes.iterator();		
-		while(TimeIterator.hasNext()) {	
-			time=(long) TimeIterator.next();
-			sumTime+=time;
-			minTime=Math.min(time, minTime);
-			maxTime=Math.max(time, maxTime);
+		int cut;
+		if (g.n<=SMALL_GRAPH) {
+			cut=StoerWagner.denseMinCut(g.n, g.from, g.to, g.weight);
+		} else if (depth>=maxRecursionDepth || heldEdges+2L*g.from.length>maxRecursionEdges) {
+			cut=contract(g, 2).totalWeight();
+		} else {
+			int target=(int)Math.ceil(1+g.n/Math.sqrt(2));
+			Multigraph first=contract(g, target);
+			int firstCut=first.n>target ? 0 : recursiveContraction(first, depth+1, heldEdges+first.from.length);
+			first=null;
+			Multigraph second=contract(g, target);
+			int secondCut=second.n>target ? 0 : recursiveContraction(second, depth+1, heldEdges+second.from.length);
+			cut=Math.min(firstCut, secondCut);
+		}
+		
+		if (cut<bestCut) {
+			bestCut=cut;
+		}
+		return cut;
+	}
 
+	public int findMinCutKargerStein(int repetitions){
+		// Search the minimum cut repeating the Karger-Stein recursive contraction. The parallel edges are merged after
+		// each contraction, so a contracted graph of n vertexes has less than n^2/2 weighted edges and a repetition takes
+		// O(m log m) for the first contraction plus O(n^2 log^2 n) for the recursion (each level sorts the random keys
+		// of its edges, and the (n/SMALL_GRAPH)^2 leaves cut exactly in O(SMALL_GRAPH^3) each, see
+		// StoerWagner.denseMinCut); O(log^2 n) repetitions reach the same error bound as O(n^2) iterations of the
+		// Kager's method
+		// Input value: the number of repetitions
+		// Output value: the minimum cut discovered, also if the thread is interrupted before all repetitions complete,
+		// Integer.MAX_VALUE if the graph has less than two vertexes and no cut
+		
+		bestCut=Integer.MAX_VALUE;
+		if (verticesNumber<2) return bestCut;
+		// the first contraction starts from the end points of the edges, read from the graph's rows
+		int[] from=new int[edgesNumber];
+		int[] firstEdge=graph.firstEdge();
+		for (int u=0;u<verticesNumber;u++) {
+			Arrays.fill(from, firstEdge[u], firstEdge[u+1], u);
+		}
+		int[] ones=new int[edgesNumber];
+		Arrays.fill(ones, 1);
+		Multigraph g=merge(verticesNumber, from, graph.upper(), ones, edgesNumber);
+		from=null;
+		for (int n=0;n<repetitions && !Thread.currentThread().isInterrupted();n++) {
+			long startTime=Metrics.start();
+			// each repetition lowers bestCut when it finds a smaller cut
+			recursiveContraction(g, 0, g.from.length);
+			if (Thread.currentThread().isInterrupted()) break;
+			Metrics.stop(Metrics.Phase.ITERATION, startTime);
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			System.out.println("   Karger-Stein search interrupted, returning the best cut found so far");
 		}
+		return bestCut;
+	}
+
+	public StoerWagner.Cut findExactMinCut(){
+		// Search the minimum cut with the deterministic Stoer-Wagner algorithm on the same connected component of the
+		// randomised searches
+		// Output value: the minimum cut with the two sets of vertexes it separates
 		
+		long startTime = System.currentTimeMillis();
+		StoerWagner.Cut cut=new StoerWagner(graph.toCSRGraph()).minCut();
+		long endTime = System.currentTimeMillis();
+
+		System.out.println("   Exact cut separates "+cut.getSide().length+" and "+cut.getOtherSide().length+" vertexes");
+		System.out.println("   Running time (msec): "+(endTime-startTime));
+		return cut;
+	}
+
+	public int findMinCut(int iterations){
+		int cutToReturn=0;
+
+		// The iterations are shared between threads: each thread takes the next iteration not started yet and writes its
+		// cut in the iteration's own slot of cuts, so no lock is needed to collect the results, and its running time in
+		// a histogram that threads update without locking
+		// The smallest cut found and the iteration that found it are shared through atomic variables for the early stop
+		int[] cuts=new int[iterations];
+		Metrics.Histogram iterationTimes=new Metrics.Histogram();
+		Arrays.fill(cuts, -1);
+		AtomicInteger nextIteration=new AtomicInteger();
+		AtomicInteger completedIterations=new AtomicInteger();
+		AtomicInteger lastImprovement=new AtomicInteger();
+		AtomicInteger smallestCut=new AtomicInteger(Integer.MAX_VALUE);
+		long deadline=timeBudget>0 ? System.currentTimeMillis()+timeBudget : Long.MAX_VALUE;
+
+		Callable<Void> worker=() -> {
+			// working structures of the Kager's method, reused by all iterations of a thread since they don't modify the class's graph
+			UnionFind superVertexes=new UnionFind(verticesNumber);
+			int[] order=new int[edgesNumber];
+			Random workerRandom=new Random();
+
+			for (int n=nextIteration.getAndIncrement();n<iterations;n=nextIteration.getAndIncrement()) {
+				if (System.currentTimeMillis()>deadline) break;
+				if (patience>0 && completedIterations.get()-lastImprovement.get()>=patience) break;
+
+				long startTime = System.nanoTime();
+				// apply the Kager and store the returned number of edges for later analysis
+				workerRandom.setSeed(seed+0x9E3779B97F4A7C15L*n);
+				int cut=Kager(superVertexes, order, workerRandom);
+				// record the time used to run Kager for the printed summary and for the metrics (JMX and reporters)
+				long totalTime=System.nanoTime()-startTime;
+				iterationTimes.record(totalTime);
+				Metrics.record(Metrics.Phase.ITERATION, totalTime);
+				cuts[n]=cut;
+
+				int completed=completedIterations.incrementAndGet();
+				int smallest=smallestCut.get();
+				while (cut<smallest) {
+					if (smallestCut.compareAndSet(smallest, cut)) {
+						lastImprovement.set(completed);
+						break;
+					}
+					smallest=smallestCut.get();
+				}
+			}
+			return null;
+		};
+
+		ExecutorService pool=Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> workers=new ArrayList<Future<Void>>();
+			for (int t=0;t<threads;t++) {
+				workers.add(pool.submit(worker));
+			}
+			for (Future<Void> f:workers) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Min cut search interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Min cut search failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		// collect the iterations completed in their order, in a list of this call only so that the cuts of earlier
+		// searches are never reported or returned again
+		LinkedList<Integer> minCutList=new LinkedList<Integer>();
+		for (int n=0;n<iterations;n++) {
+			if (cuts[n]>=0) {
+				minCutList.add(cuts[n]);
+			}
+		}
+		if (completedIterations.get()<iterations) {
+			System.out.println("   Stopped early after "+completedIterations.get()+" iterations");
+		}
+		if (minCutList.isEmpty()) {
+			return 0;
+		}
+
+		// visualize the number of cut for each iteration and the minimum, maximum and average running time
+		System.out.println("   Cuts recorded: "+minCutList);
 		System.out.println(" ---------------------- ");
-		System.out.println("   Min/Avg/Max Runnig time (msec):" +minTime+"/"+sumTime/iterations+"/"+maxTime);
+		System.out.println("   Min/Avg/Max Runnig time (msec):" +iterationTimes.min()/1e6+"/"+iterationTimes.mean()/1e6
+				+"/"+iterationTimes.max()/1e6);
 		System.out.println(" ---------------------- ");
 
 		// Calculate the minimum number of edges recorded in the discovered graph's cut set
@@ -148,11 +503,15 @@ public class MinCut {
 	public static void main(String[] args) {
 
 		// select the number of iterations
-		// To assure a 0.01 error, must repeat 20*n*n times which is not feasible with the current running times for the data set selected
+		// To assure a 0.01 error, must repeat 20*n*n times which was not feasible when each iteration merged the adjacency lists
+		// With the union-find contraction an iteration is close to linear in the number of edges
 		// Tested using iterations of 100 times for 1000 and 2000 data sets 
 
 		int iteration=100;
 		
+		// expose the phase times and counters to JMX consoles while the searches run
+		Metrics.registerMBeanIfEnabled();
+
 		String dataSet="data/facebook_1000.txt";
 //		String dataSet="data/facebook_2000.txt";
 //		String dataSet="data/facebook_ucsd.txt";
@@ -167,6 +526,14 @@ public class MinCut {
 		// perform the search of the minimum cut for the number of iteration specified and visualize the
 		// minimum number of edges in the cut series
 		System.out.println("Answer to minum cut question for "+ dataSet +" largest connected component is :"+minCutTest.findMinCut(iteration));
+		// the Karger-Stein recursive contraction needs far less repetitions for the same error bound
+		System.out.println("Karger-Stein answer for "+ dataSet +" largest connected component is :"+minCutTest.findMinCutKargerStein(10));
+		// the Stoer-Wagner algorithm returns the exact answer
+		System.out.println("Exact answer for "+ dataSet +" largest connected component is :"+minCutTest.findExactMinCut().getValue());
+
+		// print the time spent in each phase of the searches
+		Metrics.addReporter(Metrics.CONSOLE);
+		Metrics.report();
 	}
 }
 
@@ -0,0 +1,70 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The RowGraph interface gives read access to a graph stored in compressed sparse rows, wherever the rows live:
+ * vertexes have a dense index from 0 to vertexCount()-1 and the neighbours of index v are target(k) for k from
+ * rowStart(v) to rowEnd(v)-1. Positions are long so that rows mapped from a file (MappedGraph) can hold more than
+ * 2^31 edges; the heap rows of CSRGraph implement it too, so the searches written on this interface are shared.
+ **/
+
+public interface RowGraph {
+
+	/*
+	 * Return the number of vertexes in the graph
+	 */
+	int vertexCount();
+
+	/*
+	 * Return the position of the first neighbour of the vertex index, to be read with target
+	 */
+	long rowStart(int index);
+
+	/*
+	 * Return the position after the last neighbour of the vertex index
+	 */
+	long rowEnd(int index);
+
+	/*
+	 * Return the vertex index of the neighbour in position, from rowStart to rowEnd-1 of a vertex
+	 */
+	int target(long position);
+
+	/*
+	 * Label the connected component of each vertex index of graph following its rows, numbering the components from 0
+	 * in order of their lowest vertex index, and return the number of components
+	 * Input value: the arrays of vertexCount() integers to fill with the labels and to use as BFS queue
+	 */
+	static int labelComponents(RowGraph graph, int[] labels, int[] queue) {
+		long start = Metrics.start();
+		int n = graph.vertexCount();
+		Arrays.fill(labels, 0, n, -1);
+		int components = 0;
+		for (int s = 0; s < n; s++) {
+			if (labels[s] >= 0) continue;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = s;
+			labels[s] = components;
+			while (head < tail) {
+				int v = queue[head++];
+				long end = graph.rowEnd(v);
+				for (long k = graph.rowStart(v); k < end; k++) {
+					int w = graph.target(k);
+					if (labels[w] < 0) {
+						labels[w] = components;
+						queue[tail++] = w;
+					}
+				}
+			}
+			components++;
+		}
+		Metrics.stop(Metrics.Phase.COMPONENTS, start);
+		Metrics.count(Metrics.Counter.NODES_VISITED, n);
+		Metrics.count(Metrics.Counter.EDGES_TRAVERSED, n == 0 ? 0 : graph.rowEnd(n - 1) - graph.rowStart(0));
+		return components;
+	}
+}
@@ -0,0 +1,99 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The SparseWeights class sums weights by integer key (a community for Louvain, a label for LabelPropagation) over
+ * the row of a vertex, then is cleared for the next row:
+ *		the sums are kept in an open addressing table (linear probing) sized by the most keys a row can touch, the
+ *		  length of the longest row, instead of the number of vertexes, so that each worker holds O(max degree) memory
+ *		  however large the graph
+ *		the slots touched are listed in the order their keys were first added, so the keys are read back in a
+ *		  deterministic order and clear costs the number of keys touched, not the size of the table
+ **/
+
+class SparseWeights {
+
+	private static final int FREE = -1;
+
+	// keys[slot] is a touched key (FREE if the slot is free) and weights[slot] the sum of its weights
+	private final int[] keys;
+	private final double[] weights;
+	private final int mask;
+	// slots of the touched keys, in the order they were touched
+	private final int[] touched;
+	private int touchedNumber = 0;
+
+	/*
+	 * Create a table for up to capacity distinct keys between two clears
+	 */
+	SparseWeights(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(1, capacity)) << 2;
+		keys = new int[slots];
+		weights = new double[slots];
+		mask = slots - 1;
+		touched = new int[Math.max(1, capacity)];
+		Arrays.fill(keys, FREE);
+	}
+
+	/*
+	 * Add weight to the sum of key, a non negative integer
+	 */
+	void add(int key, double weight) {
+		int slot = slot(key);
+		if (keys[slot] == FREE) {
+			keys[slot] = key;
+			touched[touchedNumber++] = slot;
+		}
+		weights[slot] += weight;
+	}
+
+	/*
+	 * Return the number of keys touched since the last clear
+	 */
+	int size() {
+		return touchedNumber;
+	}
+
+	/*
+	 * Return the i-th key touched
+	 */
+	int key(int i) {
+		return keys[touched[i]];
+	}
+
+	/*
+	 * Return the sum of the weights of the i-th key touched
+	 */
+	double weight(int i) {
+		return weights[touched[i]];
+	}
+
+	/*
+	 * Return the sum of the weights of key, 0 if it wasn't touched
+	 */
+	double weightOf(int key) {
+		int slot = slot(key);
+		return keys[slot] == FREE ? 0.0 : weights[slot];
+	}
+
+	void clear() {
+		for (int i = 0; i < touchedNumber; i++) {
+			keys[touched[i]] = FREE;
+			weights[touched[i]] = 0.0;
+		}
+		touchedNumber = 0;
+	}
+
+	private int slot(int key) {
+		// linear probing from a multiplicative hash, the table being at most half full
+		int h = key * 0x9E3779B9;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (keys[slot] != FREE && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,363 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The StoerWagner class computes the exact global minimum cut of an undirected graph stored in a CSRGraph: the
+ * minimum number of edges that if removed separate the graph in two sets of vertexes, together with the two sets.
+ * Unlike the Kager's method of MinCut the answer is deterministic and so is the running time, O(V*E*log V).
+ *
+ * The algorithm runs V-1 phases on a weighted graph where the weight of an edge is the number of edges it stands for:
+ *		Starting from any vertex, grow a set A adding each time the vertex most tightly connected to A (maximum adjacency
+ *		  order), the connection of each vertex to A being kept as key of a binary max heap
+ *		The last vertex added, t, is separated from the rest of the graph by a cut of weight key(t) (cut of the phase):
+ *		  record it if it is the smallest seen so far
+ *		Merge t with the vertex added before it, summing the weights of the parallel edges
+ * The minimum cut is the smallest cut of the phase recorded.
+ *
+ * denseMinCut runs the same phases on the adjacency matrix of a small weighted multigraph in O(V^3), faster than the
+ * heap on the few vertexes of the leaves of the Karger-Stein recursion of MinCut.
+ *
+ * Merged vertexes are tracked with a UnionFind: each vertex's adjacency is only rewritten when it is merged, while the
+ * references to merged vertexes in the other adjacency lists are resolved with find when they are visited.
+ * The graph is assumed undirected (each edge stored in both directions) as the facebook's friend graph data set.
+ **/
+
+public class StoerWagner {
+
+	/*
+	 * A cut of the graph: its number of edges and the two sets of vertexes (as vertex integers) it separates
+	 */
+	public static class Cut {
+		private final int value;
+		private final int[] side;
+		private final int[] otherSide;
+
+		Cut(int value, int[] side, int[] otherSide) {
+			this.value = value;
+			this.side = side;
+			this.otherSide = otherSide;
+		}
+
+		public int getValue() {
+			return value;
+		}
+
+		public int[] getSide() {
+			return side;
+		}
+
+		public int[] getOtherSide() {
+			return otherSide;
+		}
+	}
+
+	// the graph investigated
+	private final CSRGraph graph;
+
+	// adjacency of each merged vertex (valid for roots of the UnionFind): neighbours (possibly merged away since) and
+	// weights of the edges toward them
+	private int[][] neighbours;
+	private int[][] weights;
+	private int[] degree;
+
+	// members of each merged vertex as a linked list: first member, last member and next member of each vertex
+	private int[] firstMember;
+	private int[] lastMember;
+	private int[] nextMember;
+
+	private UnionFind merged;
+
+	// binary max heap of (key << 32 | vertex) entries, entries whose key is stale are skipped when extracted
+	private long[] heap;
+	private int heapSize;
+
+	public StoerWagner(CSRGraph graph) {
+		this.graph = graph;
+	}
+
+	/*
+	 * Return the weight of the minimum cut of the multigraph of n vertexes (indexes 0 to n-1) whose weighted edges are
+	 * (from[e], to[e]) with weight weight[e], running the phases on its adjacency matrix in O(n^3) time and O(n^2)
+	 * memory - Integer.MAX_VALUE if n < 2
+	 */
+	static int denseMinCut(int n, int[] from, int[] to, int[] weight) {
+		int[][] matrix = new int[n][n];
+		for (int e = 0; e < from.length; e++) {
+			matrix[from[e]][to[e]] += weight[e];
+			matrix[to[e]][from[e]] += weight[e];
+		}
+		// vertexes not merged yet, in positions 0 to aliveNumber-1
+		int[] alive = new int[n];
+		for (int v = 0; v < n; v++) {
+			alive[v] = v;
+		}
+		int[] key = new int[n];
+		boolean[] inA = new boolean[n];
+		int cut = Integer.MAX_VALUE;
+		for (int aliveNumber = n; aliveNumber > 1; aliveNumber--) {
+			// grow A in maximum adjacency order, s and t being the last two vertexes added
+			Arrays.fill(key, 0);
+			Arrays.fill(inA, false);
+			int s = -1;
+			int t = -1;
+			for (int step = 0; step < aliveNumber; step++) {
+				int next = -1;
+				for (int i = 0; i < aliveNumber; i++) {
+					int v = alive[i];
+					if (!inA[v] && (next < 0 || key[v] > key[next])) {
+						next = v;
+					}
+				}
+				inA[next] = true;
+				s = t;
+				t = next;
+				for (int i = 0; i < aliveNumber; i++) {
+					key[alive[i]] += matrix[next][alive[i]];
+				}
+			}
+			cut = Math.min(cut, key[t]);
+			// merge t in s
+			for (int i = 0; i < aliveNumber; i++) {
+				int v = alive[i];
+				matrix[s][v] += matrix[t][v];
+				matrix[v][s] = matrix[s][v];
+			}
+			matrix[s][s] = 0;
+			for (int i = 0; i < aliveNumber; i++) {
+				if (alive[i] == t) {
+					alive[i] = alive[aliveNumber - 1];
+					break;
+				}
+			}
+		}
+		return cut;
+	}
+
+	public Cut minCut() {
+		int n = graph.vertexCount();
+		if (n < 2) {
+			return new Cut(0, Arrays.copyOf(graph.ids(), n), new int[0]);
+		}
+		initialize(n);
+
+		// vertexes still in the graph (roots of the UnionFind)
+		int[] alive = new int[n];
+		for (int v = 0; v < n; v++) {
+			alive[v] = v;
+		}
+		int aliveNumber = n;
+
+		long[] key = new long[n];
+		boolean[] inA = new boolean[n];
+		int[] scratch = new int[n];
+		Arrays.fill(scratch, -1);
+
+		long bestValue = Long.MAX_VALUE;
+		int[] bestSide = new int[0];
+
+		while (aliveNumber > 1) {
+			// maximum adjacency order: every vertex enters the heap with key 0, so that vertexes not connected to A are
+			// still added to it (the cut of the phase is then 0)
+			heapSize = 0;
+			for (int i = 0; i < aliveNumber; i++) {
+				key[alive[i]] = 0;
+				inA[alive[i]] = false;
+				push(alive[i], 0);
+			}
+
+			int previous = -1;
+			int last = -1;
+			long lastKey = 0;
+			for (int added = 0; added < aliveNumber; added++) {
+				int v;
+				long entry;
+				do {
+					entry = pop();
+					v = (int) entry;
+				} while (inA[v] || (entry >>> 32) != key[v]);
+
+				inA[v] = true;
+				previous = last;
+				last = v;
+				lastKey = key[v];
+
+				for (int i = 0; i < degree[v]; i++) {
+					int w = merged.find(neighbours[v][i]);
+					if (!inA[w]) {
+						key[w] += weights[v][i];
+						push(w, key[w]);
+					}
+				}
+			}
+
+			// the last vertex added is separated from the others by a cut of weight lastKey
+			if (lastKey < bestValue) {
+				bestValue = lastKey;
+				bestSide = members(last);
+			}
+
+			// merge the last two vertexes added and remove the one that is no more a root from the alive vertexes
+			int root = merge(previous, last, scratch);
+			int removed = root == previous ? last : previous;
+			for (int i = 0; i < aliveNumber; i++) {
+				if (alive[i] == removed) {
+					alive[i] = alive[--aliveNumber];
+					break;
+				}
+			}
+		}
+
+		// translate the indexes of the best side in vertex integers and collect the other side
+		boolean[] inSide = new boolean[n];
+		for (int v:bestSide) {
+			inSide[v] = true;
+		}
+		int[] side = new int[bestSide.length];
+		int[] otherSide = new int[n - bestSide.length];
+		int sideNumber = 0;
+		int otherNumber = 0;
+		for (int v = 0; v < n; v++) {
+			if (inSide[v]) {
+				side[sideNumber++] = graph.idOf(v);
+			} else {
+				otherSide[otherNumber++] = graph.idOf(v);
+			}
+		}
+		return new Cut((int) bestValue, side, otherSide);
+	}
+
+	private void initialize(int n) {
+		// build the weighted adjacency of the graph, the weight of each edge being the number of its parallel edges
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		neighbours = new int[n][];
+		weights = new int[n][];
+		degree = new int[n];
+		for (int v = 0; v < n; v++) {
+			int[] vNeighbours = new int[offsets[v + 1] - offsets[v]];
+			int[] vWeights = new int[vNeighbours.length];
+			int d = 0;
+			// rows are sorted, so parallel edges are next to each other
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (targets[k] == v) continue;
+				if (d > 0 && vNeighbours[d - 1] == targets[k]) {
+					vWeights[d - 1]++;
+				} else {
+					vNeighbours[d] = targets[k];
+					vWeights[d++] = 1;
+				}
+			}
+			neighbours[v] = vNeighbours;
+			weights[v] = vWeights;
+			degree[v] = d;
+		}
+
+		firstMember = new int[n];
+		lastMember = new int[n];
+		nextMember = new int[n];
+		for (int v = 0; v < n; v++) {
+			firstMember[v] = v;
+			lastMember[v] = v;
+			nextMember[v] = -1;
+		}
+		merged = new UnionFind(n);
+		heap = new long[Math.max(16, 2 * n)];
+	}
+
+	private int merge(int a, int b, int[] scratch) {
+		// Merge the vertexes a and b and return the root representing them
+		// The adjacency lists of a and b are concatenated resolving each neighbour to its root, dropping the edges
+		// between a and b and summing the weights of the edges toward the same root (scratch holds the position of each
+		// root in the new list and is restored to -1)
+		merged.union(a, b);
+		int root = merged.find(a);
+
+		int[] mergedNeighbours = new int[degree[a] + degree[b]];
+		int[] mergedWeights = new int[mergedNeighbours.length];
+		int d = 0;
+		for (int source:new int[] {a, b}) {
+			for (int i = 0; i < degree[source]; i++) {
+				int w = merged.find(neighbours[source][i]);
+				if (w == root) continue;
+				if (scratch[w] < 0) {
+					scratch[w] = d;
+					mergedNeighbours[d] = w;
+					mergedWeights[d++] = weights[source][i];
+				} else {
+					mergedWeights[scratch[w]] += weights[source][i];
+				}
+			}
+		}
+		for (int i = 0; i < d; i++) {
+			scratch[mergedNeighbours[i]] = -1;
+		}
+
+		int other = root == a ? b : a;
+		neighbours[root] = mergedNeighbours;
+		weights[root] = mergedWeights;
+		degree[root] = d;
+		neighbours[other] = null;
+		weights[other] = null;
+		degree[other] = 0;
+
+		// append the members of the other vertex to the ones of the root
+		int rootFirst = firstMember[root];
+		int rootLast = lastMember[root];
+		if (root == b) {
+			// keep the members of a first, it doesn't matter but makes the order stable
+			nextMember[lastMember[a]] = rootFirst;
+			firstMember[root] = firstMember[a];
+		} else {
+			nextMember[rootLast] = firstMember[b];
+			lastMember[root] = lastMember[b];
+		}
+		return root;
+	}
+
+	private int[] members(int v) {
+		// return the original vertexes merged in v
+		int count = 0;
+		for (int m = firstMember[v]; m >= 0; m = nextMember[m]) {
+			count++;
+		}
+		int[] toReturn = new int[count];
+		count = 0;
+		for (int m = firstMember[v]; m >= 0; m = nextMember[m]) {
+			toReturn[count++] = m;
+		}
+		return toReturn;
+	}
+
+	private void push(int vertex, long key) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		long entry = (key << 32) | vertex;
+		int i = heapSize++;
+		while (i > 0 && heap[(i - 1) / 2] < entry) {
+			heap[i] = heap[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = entry;
+	}
+
+	private long pop() {
+		long top = heap[0];
+		long entry = heap[--heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && heap[child + 1] > heap[child]) {
+				child++;
+			}
+			if (heap[child] <= entry) break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = entry;
+		return top;
+	}
+}
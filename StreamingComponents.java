@@ -0,0 +1,432 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import util.GraphLoader;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The StreamingComponents class keeps the connected components of a friend graph up to date while its edges arrive,
+ * so that the number of components and the size of the largest one are read at any time without loading the graph
+ * and searching its components again:
+ *		edges are added one at a time with addEdge, by any number of threads, taken from a queue (ingest) or read
+ *		  from a text file while it is written (tail), parsed by the GraphLoader.EdgeParser of the loader
+ *		each vertex is an element of a concurrent union-find: an edge links the roots of its two vertexes with a
+ *		  compare and set, find compresses the paths with compare and set too, so no thread ever waits on a lock
+ *		the component count is the number of vertexes minus the number of successful links, the largest size the
+ *		  maximum of the sizes accumulated in the roots
+ *		the current numbers are pushed to the listeners added with addListener every period msec (publish), so a
+ *		  reader sees an edge at most one period after it is added
+ *
+ * Edges are only inserted: a friendship removed from the stream needs a reload of the graph. Vertex indexes are
+ * allocated in segments of SEGMENT_SIZE, so the structure grows with the stream without copying.
+ *
+ * The graph is assumed undirected (each edge stored in both directions) as the facebook's friend graph data set, an
+ * edge and its reverse being the same event.
+ **/
+
+public class StreamingComponents implements AutoCloseable {
+
+	private static final int SEGMENT_BITS = 16;
+	// vertexes per segment of the union-find arrays
+	static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private static final int SEGMENTS = 1 << (31 - SEGMENT_BITS);
+	// bytes read from a tailed file at a time
+	private static final int READ_BUFFER = 1 << 16;
+
+	/*
+	 * Counts published to the listeners
+	 */
+	public static class Snapshot {
+		private final long edges;
+		private final int vertexes;
+		private final long components;
+		private final long largest;
+		private final long time;
+
+		Snapshot(long edges, int vertexes, long components, long largest) {
+			this.edges = edges;
+			this.vertexes = vertexes;
+			this.components = components;
+			this.largest = largest;
+			this.time = System.currentTimeMillis();
+		}
+
+		/*
+		 * Return the number of edge events applied
+		 */
+		public long getEdges() {
+			return edges;
+		}
+
+		public int getVertexes() {
+			return vertexes;
+		}
+
+		public long getComponents() {
+			return components;
+		}
+
+		/*
+		 * Return the number of vertexes of the largest component
+		 */
+		public long getLargest() {
+			return largest;
+		}
+
+		/*
+		 * Return the time the counts were read, in msec since the epoch
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		public String toString() {
+			return "edges=" + edges + " vertexes=" + vertexes + " components=" + components + " largest=" + largest;
+		}
+	}
+
+	/*
+	 * Destination of the snapshots pushed by publish
+	 */
+	public interface Listener {
+		void update(Snapshot snapshot);
+	}
+
+	/*
+	 * Listener printing the snapshots on the standard output
+	 */
+	public static final Listener CONSOLE = snapshot -> System.out.println("   Streaming components: " + snapshot);
+
+	// vertex index of each vertex id
+	private final ConcurrentHashMap<Integer, Integer> indexes = new ConcurrentHashMap<Integer, Integer>();
+	private final AtomicInteger vertexCount = new AtomicInteger();
+	// union-find arrays by segment, parent[v] == v for a root; size[v] is the number of vertexes of the component of
+	// root v, amounts added to a vertex after it stopped being a root are moved up to its root
+	private final AtomicReferenceArray<AtomicIntegerArray> parent = new AtomicReferenceArray<AtomicIntegerArray>(SEGMENTS);
+	private final AtomicReferenceArray<AtomicIntegerArray> size = new AtomicReferenceArray<AtomicIntegerArray>(SEGMENTS);
+	private final AtomicLong components = new AtomicLong();
+	private final AtomicLong largest = new AtomicLong();
+	private final LongAdder edges = new LongAdder();
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final ExecutorService workers;
+	private final ScheduledExecutorService scheduler;
+
+	public StreamingComponents() {
+		workers = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "graph-streaming-ingestion");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "graph-streaming-publisher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/*
+	 * Add vertex id, if not present yet, and return its index
+	 */
+	public int addVertex(int id) {
+		Integer index = indexes.get(id);
+		return index != null ? index : indexes.computeIfAbsent(id, k -> allocate());
+	}
+
+	/*
+	 * Add the edge between from and to, adding the vertexes not present yet, and merge their components
+	 */
+	public void addEdge(int from, int to) {
+		link(from, to);
+		edges.increment();
+	}
+
+	/*
+	 * Add the edges stored as (from, to) couples in the first 2*count slots of edges
+	 */
+	public void addEdges(int[] edges, int count) {
+		for (int i = 0; i < count; i++) {
+			addEdge(edges[2 * i], edges[2 * i + 1]);
+		}
+	}
+
+	/*
+	 * Return true if the vertexes from and to are in the same component, false if they are not or not present
+	 */
+	public boolean connected(int from, int to) {
+		Integer a = indexes.get(from);
+		Integer b = indexes.get(to);
+		if (a == null || b == null) return false;
+		// repeat if a root was linked between the two finds
+		while (true) {
+			int rootA = find(a);
+			int rootB = find(b);
+			if (rootA == rootB) return true;
+			if (parent(rootA) == rootA) return false;
+		}
+	}
+
+	public int vertexCount() {
+		return vertexCount.get();
+	}
+
+	/*
+	 * Return the number of edge events applied - the lines tail reads again after its file shrank are counted only
+	 * if they changed the components
+	 */
+	public long edgeCount() {
+		return edges.sum();
+	}
+
+	/*
+	 * Return the number of connected components
+	 */
+	public long componentsNumber() {
+		return components.get();
+	}
+
+	/*
+	 * Return the number of vertexes of the largest component, 0 if there are no vertexes
+	 */
+	public long largestComponentSize() {
+		return largest.get();
+	}
+
+	/*
+	 * Return the current counts
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(edgeCount(), vertexCount(), componentsNumber(), largestComponentSize());
+	}
+
+	/*
+	 * Start a worker adding the edges taken from events, each event being an array of (from, to) couples, until an
+	 * empty array is taken or the returned future is cancelled
+	 */
+	public Future<?> ingest(BlockingQueue<int[]> events) {
+		return workers.submit(() -> {
+			try {
+				while (true) {
+					int[] event = events.take();
+					if (event.length == 0) return;
+					addEdges(event, event.length / 2);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	/*
+	 * Start a worker adding the edges of the lines of filename from its start, then waiting for new lines every
+	 * pollPeriod msec until the returned future is cancelled. A line is added only when its line break is written.
+	 * If the file shrinks it is read again from the start: the lines starting before the length read then are edges
+	 * already added most of the time, so they are counted in edgeCount only if they add a vertex or link two components.
+	 * A malformed line (see GraphLoader.EdgeParser) ends the worker with an IllegalArgumentException.
+	 */
+	public Future<?> tail(String filename, long pollPeriod) {
+		return workers.submit(() -> {
+			try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+				ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+				GraphLoader.EdgeParser parser = new GraphLoader.EdgeParser(filename, 0, READ_BUFFER / 4);
+				long position = 0;
+				// the bytes before replayEnd were read before the file shrank
+				long replayEnd = 0;
+				while (!Thread.currentThread().isInterrupted()) {
+					if (channel.size() < position) {
+						replayEnd = Math.max(replayEnd, position);
+						position = 0;
+						parser.reset(0);
+					}
+					// a read stops at replayEnd, so that its lines are all read again or all new
+					buffer.clear();
+					if (position < replayEnd) {
+						buffer.limit((int) Math.min(buffer.capacity(), replayEnd - position));
+					}
+					int read = channel.read(buffer, position);
+					if (read <= 0) {
+						Thread.sleep(pollPeriod);
+						continue;
+					}
+					long readStart = position;
+					position += read;
+					buffer.flip();
+					if (readStart >= replayEnd && parser.lineStart() < replayEnd) {
+						// the line started before replayEnd ends in this read: add it as read again
+						int end = 0;
+						while (end < read && buffer.get(end) != '\n') {
+							end++;
+						}
+						ByteBuffer head = buffer.duplicate();
+						head.limit(Math.min(end + 1, read));
+						parser.accept(head);
+						addLines(parser, true);
+						buffer.position(head.limit());
+					}
+					parser.accept(buffer);
+					addLines(parser, readStart < replayEnd);
+				}
+			} catch (ClosedByInterruptException | InterruptedException e) {
+				// cancelled while reading or sleeping
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				throw new IllegalStateException("Tailing " + filename + " failed", e);
+			}
+			return null;
+		});
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/*
+	 * Push the current counts to all listeners
+	 */
+	public void publish() {
+		Snapshot snapshot = snapshot();
+		for (Listener listener:listeners) {
+			listener.update(snapshot);
+		}
+	}
+
+	/*
+	 * Push the counts to all listeners every period msec on a daemon thread, until the returned future is cancelled
+	 */
+	public ScheduledFuture<?> publish(long period) {
+		return scheduler.scheduleAtFixedRate(this::publish, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Stop the ingestion workers and the publication
+	 */
+	public void close() {
+		workers.shutdownNow();
+		scheduler.shutdownNow();
+	}
+
+	private void addLines(GraphLoader.EdgeParser parser, boolean replay) {
+		// Add the edges of the complete lines parsed, counting the lines read again only if they changed the components
+		int[] values = parser.values();
+		for (int i = 0; i < parser.edgeCount(); i++) {
+			if (link(values[2 * i], values[2 * i + 1]) || !replay) {
+				edges.increment();
+			}
+		}
+		parser.clear();
+	}
+
+	private boolean link(int from, int to) {
+		// Add the vertexes and merge their components, return true if a vertex was added or two components merged
+		boolean added = !indexes.containsKey(from) || !indexes.containsKey(to);
+		int a = addVertex(from);
+		int b = addVertex(to);
+		return (a != b && union(a, b)) || added;
+	}
+
+	private int allocate() {
+		// Return a new vertex index, a component by itself
+		int index = vertexCount.getAndIncrement();
+		if (index < 0) {
+			throw new IllegalStateException("Too many vertexes");
+		}
+		int segment = index >>> SEGMENT_BITS;
+		if (parent.get(segment) == null) {
+			parent.compareAndSet(segment, null, new AtomicIntegerArray(SEGMENT_SIZE));
+		}
+		if (size.get(segment) == null) {
+			size.compareAndSet(segment, null, new AtomicIntegerArray(SEGMENT_SIZE));
+		}
+		parent.get(segment).set(index & (SEGMENT_SIZE - 1), index);
+		size.get(segment).set(index & (SEGMENT_SIZE - 1), 1);
+		components.incrementAndGet();
+		largest.accumulateAndGet(1, Math::max);
+		return index;
+	}
+
+	private int parent(int v) {
+		return parent.get(v >>> SEGMENT_BITS).get(v & (SEGMENT_SIZE - 1));
+	}
+
+	private boolean casParent(int v, int expected, int update) {
+		return parent.get(v >>> SEGMENT_BITS).compareAndSet(v & (SEGMENT_SIZE - 1), expected, update);
+	}
+
+	private int find(int v) {
+		// Return the root of v, pointing each visited vertex to its grandparent when nobody changed it meanwhile
+		while (true) {
+			int p = parent(v);
+			if (p == v) return v;
+			int grandparent = parent(p);
+			if (p != grandparent) {
+				casParent(v, p, grandparent);
+			}
+			v = grandparent;
+		}
+	}
+
+	private boolean union(int a, int b) {
+		// Link the root with lower priority under the other one, retrying if either root was linked meanwhile, return
+		// false if a and b were in the same component already
+		while (true) {
+			int rootA = find(a);
+			int rootB = find(b);
+			if (rootA == rootB) return false;
+			if (priority(rootA) < priority(rootB) || (priority(rootA) == priority(rootB) && rootA < rootB)) {
+				int swap = rootA;
+				rootA = rootB;
+				rootB = swap;
+			}
+			if (casParent(rootB, rootB, rootA)) {
+				components.decrementAndGet();
+				moveSize(rootB);
+				return true;
+			}
+		}
+	}
+
+	private void moveSize(int v) {
+		// Move the size accumulated in v, not a root anymore, up to the root of its component. An amount added to a
+		// root that is linked meanwhile is moved by whoever finds it: the linking thread if the amount arrived before
+		// the link, the adding thread otherwise, so no amount is left behind.
+		while (parent(v) != v) {
+			int amount = size.get(v >>> SEGMENT_BITS).getAndSet(v & (SEGMENT_SIZE - 1), 0);
+			if (amount == 0) return;
+			v = find(v);
+			long total = size.get(v >>> SEGMENT_BITS).addAndGet(v & (SEGMENT_SIZE - 1), amount);
+			largest.accumulateAndGet(total, Math::max);
+		}
+	}
+
+	private static int priority(int v) {
+		// random but fixed priority of a root: linking by priority keeps the trees shallow in expectation
+		int h = v * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
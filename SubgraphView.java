@@ -0,0 +1,225 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The SubgraphView class implements the Graph's interface as a read only view of the subgraph induced by one component
+ * of a Components partition: the vertexes are the ones of the component and the neighbours of a vertex are read from
+ * the CSRGraph rows skipping the ones of other components, so no edge is copied.
+ *
+ * A view can be materialized in a CapGraph (toCapGraph) to be modified or in a CSRGraph (toCSRGraph) to be stored.
+ **/
+
+public class SubgraphView implements Graph {
+
+	private final Components components;
+	private final CSRGraph graph;
+	private final int[] labels;
+	// the component viewed, -1 for an empty view
+	private final int component;
+
+	SubgraphView(Components components, int component) {
+		this.components = components;
+		this.graph = components.getGraph();
+		this.labels = components.labels();
+		this.component = component;
+	}
+
+	/*
+	 * Return the partition the viewed component belongs to
+	 */
+	public Components getComponents() {
+		return components;
+	}
+
+	/*
+	 * Return the component viewed in its Components partition
+	 */
+	public int getComponent() {
+		return component;
+	}
+
+	/*
+	 * Return true if the vertex named node belongs to the view
+	 */
+	public boolean contains(int node) {
+		int index = graph.indexOf(node);
+		return index >= 0 && component >= 0 && labels[index] == component;
+	}
+
+	/*
+	 * Return the number of vertexes in the view
+	 */
+	public int vertexCount() {
+		return components.memberEnd(component) - components.memberStart(component);
+	}
+
+	/*
+	 * Return the number of directed edges between vertexes of the view
+	 */
+	public int edgeCount() {
+		int[] members = components.members();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int edges = 0;
+		for (int m = components.memberStart(component); m < components.memberEnd(component); m++) {
+			int v = members[m];
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (labels[targets[k]] == component) {
+					edges++;
+				}
+			}
+		}
+		return edges;
+	}
+
+	/*
+	 * Return the total number of vertexes in the view
+	 */
+	public int GetVertexesNumber() {
+		return vertexCount();
+	}
+
+	/*
+	 * Return the total number of edges in the view
+	 */
+	public int GetEdgesNumber() {
+		return edgeCount();
+	}
+
+	/*
+	 * Return the vertexes of the view in increasing order
+	 */
+	public Set<Integer> getVertices() {
+		int[] members = components.members();
+		LinkedHashSet<Integer> toReturn = new LinkedHashSet<Integer>();
+		for (int m = components.memberStart(component); m < components.memberEnd(component); m++) {
+			toReturn.add(graph.idOf(members[m]));
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the neighbours of node in the view, an empty list if node doesn't belong to the view
+	 */
+	public ArrayList<Integer> getNeighbour(Integer node) {
+		ArrayList<Integer> toReturn = new ArrayList<Integer>();
+		if (!contains(node)) return toReturn;
+		int v = graph.indexOf(node);
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+			if (labels[targets[k]] == component) {
+				toReturn.add(graph.idOf(targets[k]));
+			}
+		}
+		return toReturn;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addVertex(int)
+	 */
+	@Override
+	public void addVertex(int num) {
+		throw new UnsupportedOperationException("A subgraph view is read only, modify a copy from toCapGraph");
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addEdge(int, int)
+	 */
+	@Override
+	public void addEdge(int from, int to) {
+		throw new UnsupportedOperationException("A subgraph view is read only, modify a copy from toCapGraph");
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getEgonet(int)
+	 */
+	@Override
+	public Graph getEgonet(int center) {
+		return graph.egonet(center, labels, component);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getSCCs()
+	 */
+	@Override
+	public List<Graph> getSCCs() {
+		return toCSRGraph().getSCCs();
+	}
+
+	/*
+	 * Copy the view in a new CSRGraph
+	 */
+	public CSRGraph toCSRGraph() {
+		// the members of the component are in increasing index order, so they keep the order of the vertex names
+		int[] members = components.members();
+		int start = components.memberStart(component);
+		int n = components.memberEnd(component) - start;
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int[] ids = graph.ids();
+
+		// position of each member in the new graph
+		int[] position = new int[graph.vertexCount()];
+		int[] viewIds = new int[n];
+		for (int i = 0; i < n; i++) {
+			position[members[start + i]] = i;
+			viewIds[i] = ids[members[start + i]];
+		}
+		int[] viewOffsets = new int[n + 1];
+		int[] viewTargets = new int[edgeCount()];
+		int edges = 0;
+		for (int i = 0; i < n; i++) {
+			int v = members[start + i];
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (labels[targets[k]] == component) {
+					viewTargets[edges++] = position[targets[k]];
+				}
+			}
+			viewOffsets[i + 1] = edges;
+		}
+		return new CSRGraph(viewIds, viewOffsets, viewTargets);
+	}
+
+	/*
+	 * Copy the view in a new modifiable CapGraph
+	 */
+	public CapGraph toCapGraph() {
+		int[] members = components.members();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		CapGraph copyGraph = new CapGraph();
+		for (int m = components.memberStart(component); m < components.memberEnd(component); m++) {
+			copyGraph.addVertex(graph.idOf(members[m]));
+		}
+		for (int m = components.memberStart(component); m < components.memberEnd(component); m++) {
+			int v = members[m];
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (labels[targets[k]] == component) {
+					copyGraph.addEdge(graph.idOf(v), graph.idOf(targets[k]));
+				}
+			}
+		}
+		return copyGraph;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#exportGraph()
+	 */
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		HashMap<Integer, HashSet<Integer>> toReturn = new HashMap<Integer, HashSet<Integer>>();
+		for (Integer v:getVertices()) {
+			toReturn.put(v, new HashSet<Integer>(getNeighbour(v)));
+		}
+		return toReturn;
+	}
+}
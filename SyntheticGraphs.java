@@ -0,0 +1,316 @@
+package graph;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The SyntheticGraphs class generates undirected social-like graphs of any size, so that the searches of this project
+ * can be measured and checked beyond the facebook samples:
+ *		R-MAT: 2^scale vertexes, each edge placed choosing recursively one of the four quadrants of the adjacency matrix
+ *		  with probabilities a, b, c and 1-a-b-c, giving a skewed degree distribution and a community-like structure
+ *		Barabasi-Albert: vertexes added one at a time, each linked to edgesPerVertex earlier vertexes chosen with
+ *		  probability proportional to their degree (preferential attachment)
+ *		Stochastic block model: vertexes split in communities of consecutive integers (see plantedCommunity), two vertexes
+ *		  linked with probability pIn if they are in the same community and pOut otherwise - the planted communities are
+ *		  the expected answer of denseComunities and the smallest community gives an upper bound for MinCut
+ *
+ * Generators are seeded and reproducible, and stream the edges to an EdgeSink as they are generated without storing
+ * them: toFile writes a data set in the format read by GraphLoader (and converted by GraphSnapshot), toGraph adds the
+ * edges to a graph in bulk. Each undirected edge is emitted in both directions as in the facebook data sets; self
+ * loops are dropped while parallel edges, rare on sparse graphs, are kept as R-MAT and Barabasi-Albert produce them.
+ **/
+
+public class SyntheticGraphs {
+
+	// R-MAT quadrant probabilities used by the Graph500 benchmark
+	public static final double RMAT_A = 0.57;
+	public static final double RMAT_B = 0.19;
+	public static final double RMAT_C = 0.19;
+
+	// number of edges buffered before they are added to a BulkGraph
+	private static final int GRAPH_BUFFER_EDGES = 1 << 16;
+
+	/*
+	 * Destination of the generated edges - close flushes the edges still buffered
+	 */
+	public interface EdgeSink extends Closeable {
+		void addEdge(int from, int to) throws IOException;
+	}
+
+	/*
+	 * Return a sink that writes the edges in the text file named fileName, one "from to" couple per line
+	 */
+	public static EdgeSink toFile(String fileName) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(fileName), 1 << 20);
+		return new EdgeSink() {
+			@Override
+			public void addEdge(int from, int to) throws IOException {
+				writer.write(Integer.toString(from));
+				writer.write(' ');
+				writer.write(Integer.toString(to));
+				writer.write('\n');
+			}
+
+			@Override
+			public void close() throws IOException {
+				writer.close();
+			}
+		};
+	}
+
+	/*
+	 * Return a sink that adds the edges, and their vertexes when missing, to graph - in batches when graph is a
+	 * BulkGraph, as GraphLoader does
+	 */
+	public static EdgeSink toGraph(Graph graph) {
+		if (graph instanceof BulkGraph) {
+			BulkGraph bulkGraph = (BulkGraph) graph;
+			int[] edges = new int[2 * GRAPH_BUFFER_EDGES];
+			return new EdgeSink() {
+				private int count = 0;
+
+				@Override
+				public void addEdge(int from, int to) {
+					edges[2 * count] = from;
+					edges[2 * count + 1] = to;
+					if (++count == GRAPH_BUFFER_EDGES) {
+						close();
+					}
+				}
+
+				@Override
+				public void close() {
+					bulkGraph.addEdges(edges, count);
+					count = 0;
+				}
+			};
+		}
+
+		Set<Integer> seen = new HashSet<Integer>();
+		return new EdgeSink() {
+			@Override
+			public void addEdge(int from, int to) {
+				if (seen.add(from)) {
+					graph.addVertex(from);
+				}
+				if (seen.add(to)) {
+					graph.addVertex(to);
+				}
+				graph.addEdge(from, to);
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/*
+	 * Generate an R-MAT graph with the Graph500 quadrant probabilities
+	 */
+	public static long rmat(int scale, long edges, long seed, EdgeSink sink) throws IOException {
+		return rmat(scale, edges, RMAT_A, RMAT_B, RMAT_C, seed, sink);
+	}
+
+	/*
+	 * Generate an R-MAT graph of 2^scale vertexes drawing edges undirected edges with quadrant probabilities a, b, c
+	 * and 1-a-b-c, and return the number of undirected edges emitted (self loops drawn are dropped)
+	 */
+	public static long rmat(int scale, long edges, double a, double b, double c, long seed, EdgeSink sink)
+			throws IOException {
+		if (scale < 1 || scale > 31 || a < 0 || b < 0 || c < 0 || a + b + c > 1.0) {
+			throw new IllegalArgumentException("Invalid R-MAT parameters");
+		}
+		Random random = new Random(seed);
+		long emitted = 0;
+		for (long e = 0; e < edges; e++) {
+			int from = 0;
+			int to = 0;
+			for (int bit = scale - 1; bit >= 0; bit--) {
+				double r = random.nextDouble();
+				if (r < a) {
+					// top left quadrant: both bits 0
+				} else if (r < a + b) {
+					to |= 1 << bit;
+				} else if (r < a + b + c) {
+					from |= 1 << bit;
+				} else {
+					from |= 1 << bit;
+					to |= 1 << bit;
+				}
+			}
+			if (from == to) continue;
+			sink.addEdge(from, to);
+			sink.addEdge(to, from);
+			emitted++;
+		}
+		return emitted;
+	}
+
+	/*
+	 * Generate a Barabasi-Albert graph of vertexes vertexes, each one linked to edgesPerVertex earlier vertexes, and
+	 * return the number of undirected edges emitted
+	 */
+	public static long barabasiAlbert(int vertexes, int edgesPerVertex, long seed, EdgeSink sink) throws IOException {
+		// Algorithm implemented (Batagelj-Brandes):
+		//		The edges are written in a virtual array M where M[2i] is the new vertex of edge i and M[2i+1] is a copy
+		//		  of an entry of M taken uniformly before it: a vertex appears in M as many times as its degree, so the
+		//		  copy picks a vertex with probability proportional to its degree
+		//		M is not stored: the entry copied by each odd slot is drawn from a generator seeded by the slot, so any
+		//		  entry can be computed again following the copies back to an even slot, in O(log) expected steps
+		if (vertexes < 1 || edgesPerVertex < 1) {
+			throw new IllegalArgumentException("Invalid Barabasi-Albert parameters");
+		}
+		long emitted = 0;
+		for (int v = 0; v < vertexes; v++) {
+			for (int i = 0; i < edgesPerVertex; i++) {
+				long slot = 2 * ((long) v * edgesPerVertex + i) + 1;
+				int target = attachmentEntry(slot, edgesPerVertex, seed);
+				if (target == v) continue;
+				sink.addEdge(v, target);
+				sink.addEdge(target, v);
+				emitted++;
+			}
+		}
+		return emitted;
+	}
+
+	private static int attachmentEntry(long slot, int edgesPerVertex, long seed) {
+		// return the vertex stored in the slot of the virtual array of barabasiAlbert
+		while ((slot & 1) == 1) {
+			// uniform position in [0, slot)
+			long bits = mix(seed ^ (slot * 0x9E3779B97F4A7C15L)) >>> 11;
+			slot = (long) (bits * 0x1.0p-53 * slot);
+		}
+		return (int) (slot / 2 / edgesPerVertex);
+	}
+
+	private static long mix(long z) {
+		// splitmix64 finalizer
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/*
+	 * Return the planted community of vertex in a stochastic block model of vertexes vertexes and communities
+	 * communities: vertexes are split in consecutive ranges of sizes differing at most by one
+	 */
+	public static int plantedCommunity(int vertex, int vertexes, int communities) {
+		return (int) ((long) vertex * communities / vertexes);
+	}
+
+	private static int firstOfCommunity(int community, int vertexes, int communities) {
+		// lowest vertex v with v*communities >= community*vertexes
+		return (int) (((long) community * vertexes + communities - 1) / communities);
+	}
+
+	/*
+	 * Generate a stochastic block model graph and return the number of undirected edges emitted
+	 */
+	public static long stochasticBlockModel(int vertexes, int communities, double pIn, double pOut, long seed,
+			EdgeSink sink) throws IOException {
+		if (vertexes < 1 || communities < 1 || communities > vertexes || pIn < 0 || pIn > 1 || pOut < 0 || pOut > 1) {
+			throw new IllegalArgumentException("Invalid stochastic block model parameters");
+		}
+		Random random = new Random(seed);
+		// edges between communities: sample all couples with pOut, keeping the ones across two communities
+		long emitted = sampleCouples(0, vertexes, pOut, random, sink, vertexes, communities);
+		// edges inside each community
+		for (int c = 0; c < communities; c++) {
+			int start = firstOfCommunity(c, vertexes, communities);
+			int end = firstOfCommunity(c + 1, vertexes, communities);
+			emitted += sampleCouples(start, end - start, pIn, random, sink, vertexes, 0);
+		}
+		return emitted;
+	}
+
+	private static long sampleCouples(int start, int n, double p, Random random, EdgeSink sink, int vertexes,
+			int communities) throws IOException {
+		// Emit each couple of vertexes in [start, start+n) with probability p, and return the number of edges emitted
+		// When communities is not 0, couples in the same planted community are skipped
+		// Algorithm implemented (Batagelj-Brandes):
+		//		Walk the couples (v, w) with w < v in order, jumping each time over a geometric number of couples - the
+		//		  couples that are not sampled - so the cost is proportional to the edges emitted and not to n*n
+		if (p <= 0 || n < 2) return 0;
+		double logQ = Math.log(1.0 - p);
+		long maxSkip = (long) n * n;
+		long emitted = 0;
+		int v = 1;
+		long w = -1;
+		while (v < n) {
+			long skip = p >= 1.0 ? 0 : (long) Math.floor(Math.log(1.0 - random.nextDouble()) / logQ);
+			w += 1 + Math.min(skip, maxSkip);
+			while (w >= v && v < n) {
+				w -= v;
+				v++;
+			}
+			if (v < n) {
+				int from = start + v;
+				int to = start + (int) w;
+				if (communities != 0
+						&& plantedCommunity(from, vertexes, communities) == plantedCommunity(to, vertexes, communities)) {
+					continue;
+				}
+				sink.addEdge(from, to);
+				sink.addEdge(to, from);
+				emitted++;
+			}
+		}
+		return emitted;
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Write a synthetic data set in a text file that can be read by GraphLoader or converted by GraphSnapshot
+		// Input value: the model, its parameters, the file to write and optionally the seed
+
+		if (args.length < 1) {
+			usage();
+			return;
+		}
+		long edges;
+		long startTime = System.currentTimeMillis();
+		switch (args[0]) {
+		case "rmat":
+			if (args.length < 4) { usage(); return; }
+			try (EdgeSink sink = toFile(args[3])) {
+				edges = rmat(Integer.parseInt(args[1]), Long.parseLong(args[2]), seed(args, 4), sink);
+			}
+			break;
+		case "ba":
+			if (args.length < 4) { usage(); return; }
+			try (EdgeSink sink = toFile(args[3])) {
+				edges = barabasiAlbert(Integer.parseInt(args[1]), Integer.parseInt(args[2]), seed(args, 4), sink);
+			}
+			break;
+		case "sbm":
+			if (args.length < 6) { usage(); return; }
+			try (EdgeSink sink = toFile(args[5])) {
+				edges = stochasticBlockModel(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+						Double.parseDouble(args[3]), Double.parseDouble(args[4]), seed(args, 6), sink);
+			}
+			break;
+		default:
+			usage();
+			return;
+		}
+		System.out.println("Written "+edges+" undirected edges in "+(System.currentTimeMillis()-startTime)+" msec");
+	}
+
+	private static long seed(String[] args, int position) {
+		return args.length > position ? Long.parseLong(args[position]) : 42;
+	}
+
+	private static void usage() {
+		System.out.println("Usage: SyntheticGraphs rmat <scale> <edges> <file> [<seed>]");
+		System.out.println("       SyntheticGraphs ba <vertexes> <edges per vertex> <file> [<seed>]");
+		System.out.println("       SyntheticGraphs sbm <vertexes> <communities> <pIn> <pOut> <file> [<seed>]");
+	}
+}
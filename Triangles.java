@@ -0,0 +1,275 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The Triangles class counts the triangles of an undirected graph stored in a CSRGraph and derives from them the
+ * clustering coefficients that measure how tightly the neighbours of a vertex (or the vertexes of a community) are
+ * connected to each other, a better measure of cohesion than the density of edges:
+ *		local clustering of a vertex: triangles through the vertex / couples of its neighbours
+ *		global clustering (transitivity): 3 * triangles / connected triples (couples of edges sharing a vertex)
+ *		clustering of a component: the global clustering restricted to the vertexes of the component
+ *
+ * Each triangle is found once orienting every edge from the vertex of lower degree to the one of higher degree (ties
+ * broken by index), so that each vertex keeps at most O(sqrt(E)) out neighbours, then intersecting the sorted out
+ * neighbours of the two ends of each oriented edge with a linear merge - O(E*sqrt(E)) overall.
+ * The vertexes are independent: count(threads) spreads them over a pool of workers, each one counting the
+ * triangles per vertex in its own array, and sums the arrays at the end.
+ *
+ * The graph is assumed undirected (each edge stored in both directions) as the facebook's friend graph data set;
+ * parallel edges and self loops are ignored.
+ **/
+
+public class Triangles {
+
+	// number of vertexes taken at once by a worker
+	private static final int BLOCK = 256;
+
+	// the graph investigated
+	private final CSRGraph graph;
+	// number of distinct neighbours of each vertex index, self excluded
+	private final int[] degrees;
+	// neighbours of each vertex toward which its edges are oriented, sorted by index
+	private int[] outOffsets = null;
+	private int[] outTargets = null;
+	// triangles through each vertex index and total number of triangles, valid after count
+	private final long[] triangles;
+	private long total = 0;
+
+	public Triangles(CSRGraph graph) {
+		this.graph = graph;
+		this.degrees = new int[graph.vertexCount()];
+		this.triangles = new long[graph.vertexCount()];
+	}
+
+	/*
+	 * Count the triangles through each vertex
+	 */
+	public void count() {
+		orient();
+		Arrays.fill(triangles, 0);
+		countRange(0, graph.vertexCount(), triangles);
+		total = sum(triangles);
+	}
+
+	/*
+	 * Count the triangles through each vertex, on the given number of threads
+	 */
+	public void count(int threads) {
+		int n = graph.vertexCount();
+		if (threads <= 1 || n < 2 * BLOCK) {
+			count();
+			return;
+		}
+		orient();
+
+		// each worker takes the next block of vertexes not processed yet and counts in its own array
+		AtomicInteger nextBlock = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<long[]>> partials = new ArrayList<Future<long[]>>();
+			for (int t = 0; t < threads; t++) {
+				partials.add(pool.submit(() -> {
+					long[] partial = new long[n];
+					for (int start = nextBlock.getAndAdd(BLOCK); start < n; start = nextBlock.getAndAdd(BLOCK)) {
+						countRange(start, Math.min(n, start + BLOCK), partial);
+					}
+					return partial;
+				}));
+			}
+
+			Arrays.fill(triangles, 0);
+			for (Future<long[]> f : partials) {
+				long[] partial = f.get();
+				for (int v = 0; v < n; v++) {
+					triangles[v] += partial[v];
+				}
+			}
+			total = sum(triangles);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Triangle counting interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Triangle counting failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void orient() {
+		// Build the oriented graph: the edge between v and w is kept in the row of v if v precedes w, that is if v has
+		// lower degree or the same degree and lower index. Rows of the CSRGraph are sorted, so parallel edges are next
+		// to each other and the rows of the oriented graph stay sorted.
+		if (outOffsets != null) return;
+		int n = graph.vertexCount();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+
+		for (int v = 0; v < n; v++) {
+			int d = 0;
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (targets[k] != v && (k == offsets[v] || targets[k] != targets[k - 1])) d++;
+			}
+			degrees[v] = d;
+		}
+
+		int[] rowOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			int out = 0;
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				int w = targets[k];
+				if (precedes(v, w) && (k == offsets[v] || w != targets[k - 1])) out++;
+			}
+			rowOffsets[v + 1] = rowOffsets[v] + out;
+		}
+		int[] rowTargets = new int[rowOffsets[n]];
+		for (int v = 0; v < n; v++) {
+			int position = rowOffsets[v];
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				int w = targets[k];
+				if (precedes(v, w) && (k == offsets[v] || w != targets[k - 1])) rowTargets[position++] = w;
+			}
+		}
+		outOffsets = rowOffsets;
+		outTargets = rowTargets;
+	}
+
+	private boolean precedes(int v, int w) {
+		return degrees[v] < degrees[w] || (degrees[v] == degrees[w] && v < w);
+	}
+
+	private void countRange(int start, int end, long[] counts) {
+		// Add to counts the triangles whose first vertex in the orientation order is in [start, end)
+		// Algorithm implemented:
+		//		For each vertex u and each out neighbour v of u
+		//		  merge the sorted out neighbours of u and v, each common vertex w closing the triangle (u, v, w)
+		for (int u = start; u < end; u++) {
+			int uStart = outOffsets[u];
+			int uEnd = outOffsets[u + 1];
+			for (int k = uStart; k < uEnd; k++) {
+				int v = outTargets[k];
+				int i = uStart;
+				int j = outOffsets[v];
+				int vEnd = outOffsets[v + 1];
+				long found = 0;
+				while (i < uEnd && j < vEnd) {
+					if (outTargets[i] < outTargets[j]) {
+						i++;
+					} else if (outTargets[i] > outTargets[j]) {
+						j++;
+					} else {
+						counts[outTargets[i]]++;
+						found++;
+						i++;
+						j++;
+					}
+				}
+				counts[u] += found;
+				counts[v] += found;
+			}
+		}
+	}
+
+	private static long sum(long[] perVertex) {
+		// each triangle is counted on its three vertexes
+		long toReturn = 0;
+		for (long t:perVertex) {
+			toReturn += t;
+		}
+		return toReturn / 3;
+	}
+
+	/*
+	 * Return the number of triangles in the graph
+	 */
+	public long getTriangles() {
+		return total;
+	}
+
+	/*
+	 * Return the number of triangles through the vertex named vertex, 0 if it doesn't belong to the graph
+	 */
+	public long getTriangles(int vertex) {
+		int index = graph.indexOf(vertex);
+		return index < 0 ? 0 : triangles[index];
+	}
+
+	/*
+	 * Return the local clustering coefficient of the vertex named vertex, 0 if it has less than two neighbours
+	 */
+	public double localClustering(int vertex) {
+		int index = graph.indexOf(vertex);
+		return index < 0 ? 0.0 : clustering(index);
+	}
+
+	/*
+	 * Return the local clustering coefficient of each vertex index
+	 */
+	public double[] localClustering() {
+		double[] toReturn = new double[triangles.length];
+		for (int v = 0; v < toReturn.length; v++) {
+			toReturn[v] = clustering(v);
+		}
+		return toReturn;
+	}
+
+	private double clustering(int v) {
+		long couples = (long) degrees[v] * (degrees[v] - 1) / 2;
+		return couples == 0 ? 0.0 : triangles[v] / (double) couples;
+	}
+
+	/*
+	 * Return the average of the local clustering coefficients of the vertexes
+	 */
+	public double averageClustering() {
+		double sum = 0.0;
+		for (int v = 0; v < triangles.length; v++) {
+			sum += clustering(v);
+		}
+		return triangles.length == 0 ? 0.0 : sum / triangles.length;
+	}
+
+	/*
+	 * Return the global clustering coefficient (transitivity) of the graph
+	 */
+	public double globalClustering() {
+		long triples = 0;
+		for (int d:degrees) {
+			triples += (long) d * (d - 1) / 2;
+		}
+		return triples == 0 ? 0.0 : 3.0 * total / triples;
+	}
+
+	/*
+	 * Return the global clustering coefficient of each component of a partition of the same graph, counting the
+	 * triangles and connected triples of the vertexes of the component - in connected components every triangle lies
+	 * inside a single component, in other partitions (communities) a triangle crossing components is shared between them
+	 */
+	public double[] componentClustering(Components components) {
+		if (components.getGraph() != graph) {
+			throw new IllegalArgumentException("Components of a different graph");
+		}
+		int[] labels = components.labels();
+		long[] componentTriangles = new long[components.count()];
+		long[] componentTriples = new long[components.count()];
+		for (int v = 0; v < labels.length; v++) {
+			componentTriangles[labels[v]] += triangles[v];
+			componentTriples[labels[v]] += (long) degrees[v] * (degrees[v] - 1) / 2;
+		}
+		double[] toReturn = new double[components.count()];
+		for (int c = 0; c < toReturn.length; c++) {
+			// the triangles of the component have been counted on each of their three vertexes
+			toReturn[c] = componentTriples[c] == 0 ? 0.0 : componentTriangles[c] / (double) componentTriples[c];
+		}
+		return toReturn;
+	}
+}
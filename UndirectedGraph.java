@@ -0,0 +1,533 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The UndirectedGraph class implements the Graph's interface for undirected graphs as the facebook's friend graph,
+ * storing each friendship once as two half edges in compressed rows, 2 ints per friendship as in CSRGraph:
+ *		vertexes have a dense index from 0 to vertexCount()-1 in increasing order of their integer name (found with a
+ *		  binary search, without a boxed index)
+ *		each edge has a canonical id: the edges are grouped by their lower end point and upper[e] is the higher end
+ *		  point of edge e, the edges of vertex u being upper[firstEdge[u]] ... upper[firstEdge[u+1]-1], sorted
+ *		the other half edge is stored in the row of the higher end point: lower[firstLower[w]] ...
+ *		  lower[firstLower[w+1]-1] are the lower neighbours of w, sorted
+ * The higher end point of an edge is read in O(1) and the lower one with a binary search in firstEdge, so edge
+ * indexed algorithms (contractions, betweenness) can use dense int arrays by edge id without copying the end points.
+ * All neighbours of a vertex are its lower row followed by its upper row, already in increasing order.
+ *
+ * As in CSRGraph vertexes and edges added with addVertex/addEdge are buffered and the rows built the first time the
+ * graph is queried; adding after that point forces a rebuild. removeEdge is O(log degree): the edge is marked as
+ * removed and skipped by the reads, its id left unused until the next rebuild (see edgeIdBound).
+ *
+ * addEdge adds a friendship: unlike the Graph's interface a single call links both vertexes and GetEdgesNumber counts
+ * each friendship once. Data sets listing each friendship in both directions are converted from a CSRGraph (see the
+ * constructor), so that each couple of opposite edges becomes one edge. Self loops are ignored.
+ **/
+
+public class UndirectedGraph implements Graph {
+
+	// vertexes and friendships (as couples of names) added since the last build
+	private int[] pendingVertices = new int[16];
+	private int pendingVerticesNumber = 0;
+	private int[] pendingEdges = new int[32];
+	private int pendingEdgesNumber = 0;
+	private boolean built = false;
+
+	// integer name of the vertex with a given index, sorted in increasing order
+	private int[] vertexIds = new int[0];
+	// higher end point of each edge id, grouped by lower end point
+	private int[] firstEdge = new int[1];
+	private int[] upper = new int[0];
+	// lower end points of the edges of each vertex, grouped by higher end point
+	private int[] firstLower = new int[1];
+	private int[] lower = new int[0];
+	// edges removed since the build, by edge id and by position in lower; null until the first removal
+	private BitSet removed = null;
+	private BitSet removedLower = null;
+	private int[] degrees = new int[0];
+	private int edgeCount = 0;
+
+	public UndirectedGraph() {
+	}
+
+	/*
+	 * Build the undirected graph of a graph storing each edge in both directions: the vertex indexes are the ones of
+	 * source, and between two vertexes are kept as many edges as the more frequent of the two directions
+	 */
+	public UndirectedGraph(CSRGraph source) {
+		int n = source.vertexCount();
+		int[] offsets = source.offsets();
+		int[] targets = source.targets();
+
+		// collect the friendships as couples of indexes, the lower first
+		int[] pairs = new int[32];
+		int pairsNumber = 0;
+		for (int u = 0; u < n; u++) {
+			// rows are sorted: each run of equal targets is a set of parallel edges
+			for (int k = offsets[u]; k < offsets[u + 1];) {
+				int w = targets[k];
+				int end = k;
+				while (end < offsets[u + 1] && targets[end] == w) {
+					end++;
+				}
+				int forward = end - k;
+				k = end;
+				if (w == u) continue;
+				int backward = multiplicity(offsets, targets, w, u);
+				// a couple of vertexes is handled from its lower vertex, or from the higher one if the lower
+				// doesn't list it
+				int copies = w > u ? Math.max(forward, backward) : (backward == 0 ? forward : 0);
+				for (int c = 0; c < copies; c++) {
+					if (pairsNumber + 2 > pairs.length) {
+						pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+					}
+					pairs[pairsNumber++] = Math.min(u, w);
+					pairs[pairsNumber++] = Math.max(u, w);
+				}
+			}
+		}
+		vertexIds = Arrays.copyOf(source.ids(), n);
+		buildRows(pairs, pairsNumber / 2);
+		built = true;
+	}
+
+	private static int multiplicity(int[] offsets, int[] targets, int row, int target) {
+		// Return how many times target appears in the sorted row
+		int low = lowerBound(targets, offsets[row], offsets[row + 1], target);
+		int end = low;
+		while (end < offsets[row + 1] && targets[end] == target) {
+			end++;
+		}
+		return end - low;
+	}
+
+	private static int lowerBound(int[] values, int from, int to, int value) {
+		// Return the first position in the sorted range from ... to-1 whose value is not less than value
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			if (values[middle] < value) {
+				from = middle + 1;
+			} else {
+				to = middle;
+			}
+		}
+		return from;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addVertex(int)
+	 *
+	 * Add the vertex if it doesn't belong to the graph yet
+	 */
+	@Override
+	public void addVertex(int num) {
+		thaw();
+		if (pendingVerticesNumber == pendingVertices.length) {
+			pendingVertices = Arrays.copyOf(pendingVertices, 2 * pendingVertices.length);
+		}
+		pendingVertices[pendingVerticesNumber++] = num;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#addEdge(int, int)
+	 *
+	 * Add the friendship between from and to, adding the two vertexes when missing - once for both directions
+	 */
+	@Override
+	public void addEdge(int from, int to) {
+		thaw();
+		if (pendingEdgesNumber + 2 > pendingEdges.length) {
+			pendingEdges = Arrays.copyOf(pendingEdges, 2 * pendingEdges.length);
+		}
+		pendingEdges[pendingEdgesNumber++] = from;
+		pendingEdges[pendingEdgesNumber++] = to;
+	}
+
+	private void thaw() {
+		// move the built rows back in the pending buffers so that new vertexes and edges can be appended
+		if (!built) return;
+
+		pendingVertices = Arrays.copyOf(vertexIds, Math.max(16, vertexIds.length));
+		pendingVerticesNumber = vertexIds.length;
+		pendingEdges = new int[Math.max(32, 2 * edgeCount)];
+		pendingEdgesNumber = 0;
+		for (int u = 0; u < vertexIds.length; u++) {
+			for (int e = firstEdge[u]; e < firstEdge[u + 1]; e++) {
+				if (removed != null && removed.get(e)) continue;
+				pendingEdges[pendingEdgesNumber++] = vertexIds[u];
+				pendingEdges[pendingEdgesNumber++] = vertexIds[upper[e]];
+			}
+		}
+		built = false;
+	}
+
+	private void build() {
+		// Build the rows from the pending vertexes and friendships, dropping the self loops
+		if (built) return;
+
+		int[] names = Arrays.copyOf(pendingVertices, pendingVerticesNumber + pendingEdgesNumber);
+		System.arraycopy(pendingEdges, 0, names, pendingVerticesNumber, pendingEdgesNumber);
+		Arrays.sort(names);
+		int n = 0;
+		for (int i = 0; i < names.length; i++) {
+			if (i == 0 || names[i] != names[i - 1]) {
+				names[n++] = names[i];
+			}
+		}
+		vertexIds = Arrays.copyOf(names, n);
+
+		int[] pairs = new int[pendingEdgesNumber];
+		int pairsNumber = 0;
+		for (int i = 0; i < pendingEdgesNumber; i += 2) {
+			int u = Arrays.binarySearch(vertexIds, pendingEdges[i]);
+			int w = Arrays.binarySearch(vertexIds, pendingEdges[i + 1]);
+			if (u == w) continue;
+			pairs[pairsNumber++] = Math.min(u, w);
+			pairs[pairsNumber++] = Math.max(u, w);
+		}
+		buildRows(pairs, pairsNumber / 2);
+		pendingVertices = new int[16];
+		pendingVerticesNumber = 0;
+		pendingEdges = new int[32];
+		pendingEdgesNumber = 0;
+		built = true;
+	}
+
+	private void buildRows(int[] pairs, int count) {
+		// Place count couples of vertex indexes (lower, higher) in the upper and lower rows and sort each row
+		int n = vertexIds.length;
+		firstEdge = new int[n + 1];
+		firstLower = new int[n + 1];
+		for (int i = 0; i < count; i++) {
+			firstEdge[pairs[2 * i] + 1]++;
+			firstLower[pairs[2 * i + 1] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			firstEdge[v + 1] += firstEdge[v];
+			firstLower[v + 1] += firstLower[v];
+		}
+		upper = new int[count];
+		lower = new int[count];
+		int[] fillUpper = Arrays.copyOf(firstEdge, n);
+		int[] fillLower = Arrays.copyOf(firstLower, n);
+		for (int i = 0; i < count; i++) {
+			upper[fillUpper[pairs[2 * i]]++] = pairs[2 * i + 1];
+			lower[fillLower[pairs[2 * i + 1]]++] = pairs[2 * i];
+		}
+		degrees = new int[n];
+		for (int v = 0; v < n; v++) {
+			Arrays.sort(upper, firstEdge[v], firstEdge[v + 1]);
+			Arrays.sort(lower, firstLower[v], firstLower[v + 1]);
+			degrees[v] = firstEdge[v + 1] - firstEdge[v] + firstLower[v + 1] - firstLower[v];
+		}
+		removed = null;
+		removedLower = null;
+		edgeCount = count;
+	}
+
+	/*
+	 * Remove one friendship between from and to in O(log degree), return false if there is none
+	 * The ids of the other edges don't change; the id of the removed edge is not reused until the next rebuild
+	 */
+	public boolean removeEdge(int from, int to) {
+		int u = indexOf(from);
+		int w = indexOf(to);
+		if (u < 0 || w < 0 || u == w) return false;
+		if (u > w) {
+			int swap = u;
+			u = w;
+			w = swap;
+		}
+
+		// the k-th live copy of w among the edges of u is the k-th live copy of u among the lower neighbours of w
+		int e = lowerBound(upper, firstEdge[u], firstEdge[u + 1], w);
+		int q = lowerBound(lower, firstLower[w], firstLower[w + 1], u);
+		while (e < firstEdge[u + 1] && upper[e] == w && removed != null && removed.get(e)) {
+			e++;
+			q++;
+		}
+		if (e == firstEdge[u + 1] || upper[e] != w) return false;
+		if (removed == null) {
+			removed = new BitSet(upper.length);
+			removedLower = new BitSet(lower.length);
+		}
+		removed.set(e);
+		removedLower.set(q);
+		degrees[u]--;
+		degrees[w]--;
+		edgeCount--;
+		return true;
+	}
+
+	/*
+	 * Return the number of vertexes in the graph
+	 */
+	public int vertexCount() {
+		build();
+		return vertexIds.length;
+	}
+
+	/*
+	 * Return the number of edges (friendships) in the graph, in O(1)
+	 */
+	public int edgeCount() {
+		build();
+		return edgeCount;
+	}
+
+	/*
+	 * Return the number of edge ids, edgeCount() plus the ids of the edges removed since the last build
+	 */
+	public int edgeIdBound() {
+		build();
+		return upper.length;
+	}
+
+	/*
+	 * Return the dense index of the vertex named id, or -1 if the vertex doesn't belong to the graph
+	 */
+	public int indexOf(int id) {
+		build();
+		int index = Arrays.binarySearch(vertexIds, id);
+		return index < 0 ? -1 : index;
+	}
+
+	/*
+	 * Return the name of the vertex with the given dense index
+	 */
+	public int idOf(int index) {
+		build();
+		return vertexIds[index];
+	}
+
+	/*
+	 * Return the number of edges of the vertex with the given dense index
+	 */
+	public int degree(int index) {
+		build();
+		return degrees[index];
+	}
+
+	/*
+	 * Return true if edge is an edge id of the graph not removed
+	 */
+	public boolean isEdge(int edge) {
+		build();
+		return edge >= 0 && edge < upper.length && (removed == null || !removed.get(edge));
+	}
+
+	/*
+	 * Return the id of an edge between the vertex indexes u and w, -1 if they are not adjacent
+	 */
+	public int edgeId(int u, int w) {
+		build();
+		int low = Math.min(u, w);
+		int high = Math.max(u, w);
+		for (int e = lowerBound(upper, firstEdge[low], firstEdge[low + 1], high);
+				e < firstEdge[low + 1] && upper[e] == high; e++) {
+			if (removed == null || !removed.get(e)) return e;
+		}
+		return -1;
+	}
+
+	/*
+	 * Return the end point of edge with the lower index, in O(log vertexCount())
+	 */
+	public int edgeFrom(int edge) {
+		build();
+		// the last vertex whose edges start at or before edge
+		int low = 0;
+		int high = vertexIds.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (firstEdge[middle] <= edge) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/*
+	 * Return the end point of edge with the higher index, in O(1)
+	 */
+	public int edgeTo(int edge) {
+		build();
+		return upper[edge];
+	}
+
+	/*
+	 * Return the end point of edge other than the vertex index
+	 */
+	public int other(int edge, int index) {
+		int to = edgeTo(edge);
+		return to != index ? to : edgeFrom(edge);
+	}
+
+	/*
+	 * Return the higher end point of each edge id and the first edge id of each vertex, as stored - callers must not
+	 * modify them
+	 */
+	int[] upper() {
+		build();
+		return upper;
+	}
+
+	int[] firstEdge() {
+		build();
+		return firstEdge;
+	}
+
+	/*
+	 * Return the neighbours of the vertex index v as indexes, in increasing order
+	 */
+	private int[] neighbours(int v) {
+		int[] toReturn = new int[degrees[v]];
+		int size = 0;
+		for (int q = firstLower[v]; q < firstLower[v + 1]; q++) {
+			if (removedLower == null || !removedLower.get(q)) {
+				toReturn[size++] = lower[q];
+			}
+		}
+		for (int e = firstEdge[v]; e < firstEdge[v + 1]; e++) {
+			if (removed == null || !removed.get(e)) {
+				toReturn[size++] = upper[e];
+			}
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the list of neighbours of node, null if node doesn't belong to the graph
+	 */
+	public ArrayList<Integer> getNeighbour(Integer node) {
+		int v = indexOf(node);
+		if (v < 0) return null;
+		ArrayList<Integer> toReturn = new ArrayList<Integer>(degrees[v]);
+		for (int w:neighbours(v)) {
+			toReturn.add(vertexIds[w]);
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the set of vertexes in the graph
+	 */
+	public Set<Integer> getVertices() {
+		build();
+		Set<Integer> toReturn = new HashSet<Integer>();
+		for (int id:vertexIds) {
+			toReturn.add(id);
+		}
+		return toReturn;
+	}
+
+	/*
+	 * Return the total number of vertexes in the graph
+	 */
+	public int GetVertexesNumber() {
+		return vertexCount();
+	}
+
+	/*
+	 * Return the total number of edges (friendships) in the graph - not doubled as in CapGraph
+	 */
+	public int GetEdgesNumber() {
+		return edgeCount();
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getEgonet(int)
+	 */
+	@Override
+	public Graph getEgonet(int center) {
+		// return new graph with center, directly connected vertices and the edges between them
+		UndirectedGraph egoGraph = new UndirectedGraph();
+		int c = indexOf(center);
+		if (c < 0) {
+			// return null graph is center doesn't belong to graph
+			return egoGraph;
+		}
+
+		// the neighbours of the center are sorted: an edge between two of them is found with a binary search
+		int[] ego = neighbours(c);
+		egoGraph.addVertex(center);
+		for (int v:ego) {
+			egoGraph.addEdge(center, vertexIds[v]);
+		}
+		for (int i = 0; i < ego.length; i++) {
+			int v = ego[i];
+			// visit each neighbour once even if it has more than one edge with the center
+			if (i > 0 && ego[i - 1] == v) continue;
+			// each edge between two neighbours is added once, from its lower end point
+			for (int e = firstEdge[v]; e < firstEdge[v + 1]; e++) {
+				if ((removed == null || !removed.get(e)) && Arrays.binarySearch(ego, upper[e]) >= 0) {
+					egoGraph.addEdge(vertexIds[v], vertexIds[upper[e]]);
+				}
+			}
+		}
+		return egoGraph;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getSCCs()
+	 *
+	 * In an undirected graph the strongly connected components are the connected components
+	 */
+	@Override
+	public List<Graph> getSCCs() {
+		return new ArrayList<Graph>(connectedComponents().toGraphs());
+	}
+
+	/*
+	 * Return the connected components of the graph as the component of each vertex of toCSRGraph
+	 */
+	public Components connectedComponents() {
+		return toCSRGraph().connectedComponents();
+	}
+
+	/*
+	 * Return a compressed copy of the graph storing each edge in both directions, as read by the other searches
+	 */
+	public CSRGraph toCSRGraph() {
+		build();
+		int n = vertexIds.length;
+		// the lower row followed by the upper row of a vertex is already sorted
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[2 * edgeCount];
+		for (int v = 0; v < n; v++) {
+			int[] row = neighbours(v);
+			System.arraycopy(row, 0, targets, offsets[v], row.length);
+			offsets[v + 1] = offsets[v] + row.length;
+		}
+		return new CSRGraph(vertexIds.clone(), offsets, targets);
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#exportGraph()
+	 *
+	 * Each edge is exported in both directions
+	 */
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		build();
+		HashMap<Integer, HashSet<Integer>> toReturn = new HashMap<Integer, HashSet<Integer>>();
+		for (int v = 0; v < vertexIds.length; v++) {
+			HashSet<Integer> row = new HashSet<Integer>();
+			for (int w:neighbours(v)) {
+				row.add(vertexIds[w]);
+			}
+			toReturn.put(vertexIds[v], row);
+		}
+		return toReturn;
+	}
+}
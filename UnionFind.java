@@ -0,0 +1,90 @@
+package graph;
+
+/**
+ * @author Marco Umer marco.umer@gmail.com
+ *
+ * The UnionFind class stores a partition of the integers 0 ... n-1 in disjoint sets (union-find or disjoint set forest).
+ * Each set is a tree whose root represents the set: find follows the parents up to the root compressing the path
+ * (each visited element is pointed to its grandparent) and union links the root of the smaller tree under the root of
+ * the larger one, so both operations take nearly constant amortized time.
+ *
+ * MinCut uses it to contract the vertexes joined by an edge without rewriting the graph adjacency lists.
+ **/
+
+public class UnionFind {
+
+	// parent of each element, an element is the root of its set when it is its own parent
+	private final int[] parent;
+	// number of elements in the set of each root
+	private final int[] size;
+	// number of disjoint sets
+	private int setsNumber;
+
+	public UnionFind(int n) {
+		parent = new int[n];
+		size = new int[n];
+		reset();
+	}
+
+	/*
+	 * Put each element back in a set by itself
+	 */
+	public void reset() {
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+			size[i] = 1;
+		}
+		setsNumber = parent.length;
+	}
+
+	/*
+	 * Return the root representing the set of element
+	 */
+	public int find(int element) {
+		while (parent[element] != element) {
+			// path halving: point the element to its grandparent while moving up
+			parent[element] = parent[parent[element]];
+			element = parent[element];
+		}
+		return element;
+	}
+
+	/*
+	 * Merge the sets of elements a and b, return false if they were already in the same set
+	 */
+	public boolean union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if (rootA == rootB) return false;
+		if (size[rootA] < size[rootB]) {
+			int swap = rootA;
+			rootA = rootB;
+			rootB = swap;
+		}
+		parent[rootB] = rootA;
+		size[rootA] += size[rootB];
+		setsNumber--;
+		return true;
+	}
+
+	/*
+	 * Return the number of elements in the set of element
+	 */
+	public int setSize(int element) {
+		return size[find(element)];
+	}
+
+	/*
+	 * Return the number of disjoint sets
+	 */
+	public int setsNumber() {
+		return setsNumber;
+	}
+
+	/*
+	 * Return the number of elements
+	 */
+	public int size() {
+		return parent.length;
+	}
+}
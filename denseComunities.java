@@ -1,12 +1,14 @@
 package graph;
 
-import java.awt.Point;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.Queue;
-import util.GraphLoader;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Marco Umer marco.umer@gmail.com
@@ -16,6 +18,8 @@ import util.GraphLoader;
  * toward vertexes from other communities.
  * The strategy used to separate the graph in communities consists in removing edges from the graph if they are the most traversed edges 
  * when considering shorter paths tree between each node in the graph. 
+ * By default the most traversed edge is the one with the highest edge betweenness, counting all shortest paths between
+ * each couple of nodes (see EdgeBetweenness); setExactBetweenness(false) counts a single BFS tree per node (see Flows).
  * Removing the most traversed edge has the highest probability to separate an initial graph in more communities but we may need to
  * iterate the process multiple time because the graph may have redundant paths.
 
@@ -25,7 +29,11 @@ import util.GraphLoader;
  * This class supports two type of searches:
  * seachComponentsIterations that takes an integer as the number of edges to remove to divide the graph in dense communities
  * seachComponentsSet that removes from the graph the minimum number of edges to divide it in the requested number of dense communities
+ * searchModularityCommunities that divides the graph in the communities of highest modularity found by Louvain (see Louvain),
+ * without removing edges, orders of magnitude faster than the edge removal on large graphs
+ * searchLabelCommunities that gives a rougher division in communities by label propagation (see LabelPropagation), in near linear time
  * All searches take a second boolean parameter that instructs if debug messages should be printed
+ * The shortest path searches from all the nodes of each iteration are shared between setThreads threads (default: one per core)
  * Searches visualize the number of communities discovered, their relative number of nodes, edges and densities
  * In the case of seachComponentsSet the search return also the number of iteration required to achieve the requested number of communities
  * This class assumes the graph to be un-directed because it focuses on a facebook's friend graph data set. 
@@ -36,75 +44,134 @@ public class denseComunities {
 
 	// stores the graph investigated by this class
 	private CapGraph graph;
-	// stores a list with the time required to run each iteration of the algorithm
-	private LinkedList<Long> debugTimes= new LinkedList<Long>();
+	// stores the time in nsec required to run each iteration of the last search (the iterations of all searches are
+	// also recorded in Metrics)
+	private Metrics.Histogram iterationTimes= new Metrics.Histogram();
 	// records the flow units accumulated per edge in the graph to facilitate the selection of the most used one that will be removed
 	private Flows flowsAccounting = new Flows();
+	// true to remove the edge with the highest exact betweenness (EdgeBetweenness), false to remove the edge with
+	// more flow units counted on a single BFS tree per node (Flows) as the first version of this class did
+	private boolean exactBetweenness = true;
+	// number of threads sharing the shortest path searches from all the nodes in each iteration
+	private int threads = Runtime.getRuntime().availableProcessors();
+	// true to print a summary of the connected components (see ComponentStats) after each edge removal
+	private boolean componentLog = false;
 
 	public denseComunities(String DataSet) {		
 		// The class constructor load data set in the class's graph and select the connected component with more edges
 		// to search for communities if the graph is not fully connected
 		// Input value: a string with the path and name of the file with the graph definition
 		
-		// temporary graph used to search the largest connected component subgraph 
-		CapGraph tempGraph= new CapGraph();
-		// loadGraph utility load a text file when each raw represent an edge from source node to destination node as two integers
-		GraphLoader.loadGraph(tempGraph, DataSet);
-
-		// retrieve a list of the connected components subgraph in the initial graph
-		LinkedList<CapGraph> sccList=tempGraph.getCCs();
-		int higerEdges=0;
-
-		// iterate the list of connected subgraph and select the one with more edges to perform the min cut search on 
-		for (CapGraph g: sccList) {
-			if (g.GetEdgesNumber()>higerEdges) {
-				higerEdges=g.GetEdgesNumber();
-				graph=g;
-			}
-		}
-		
-		// visualize information about the subgraph selected for the search
-		System.out.println("Data set proposed has "+sccList.size()+" connected components");
-		System.out.println("Selected componet with larger number of vertexes");
-//		System.out.println("  Number of Vertexex: "+graph.GetVertexesNumber());
-//		System.out.println("  Number of Edges: "+graph.GetEdgesNumber()/2);			
+		this(GraphSnapshot.load(DataSet), true);
 	}
+
+	public denseComunities(GraphSnapshot snapshot) {
+		// The class constructor takes the graph from a snapshot already loaded, without printing anything, as
+		// GraphBenchmark does to keep its table of results clean
+		// Input value: the snapshot storing the connected component with more edges of a data set
 		
-	
-	private HashMap<Integer,Integer> BFS(Integer node) {
-		// Given a source node in the graph, BFS returns the breath search first tree from each node discovered back to the source node
-		// Input value: the source node to calculate the breath search tree from 
-		// Return value: a hashmap that stores as key a node discovered and as value the node toward the source via the discovered BFS 
+		this(snapshot, false);
+	}
+
+	private denseComunities(GraphSnapshot snapshot, boolean verbose) {
+		// Input value: the snapshot of the data set, null if it could not be read
+		// Input value: true to visualize information about the graph selected for the search
 		
-		// store a set with the node visited during the BFS exploration
-		HashSet<Integer> visitedNodes=new HashSet<Integer>();
-		// store the BFS tree to return (see explanation )
-		HashMap<Integer,Integer> BFSTreeUpstream=new HashMap<Integer,Integer>();
-		// queue with the list of nodes to explore in the BFS exploration
-		Queue<Integer> nodesToVisit = new LinkedList<Integer>();
-
-		visitedNodes.add(node);		// add source node as visited node
-		nodesToVisit.add(node);		// add source node to the end of queue
+		if (snapshot==null) {
+			graph=new CapGraph();
+			return;
+		}
+		graph=snapshot.getGraph().toCapGraph();
+
+		if (verbose) {
+			// visualize information about the subgraph selected for the search
+			System.out.println("Data set proposed has "+snapshot.getComponentsNumber()+" connected components");
+			System.out.println("Selected componet with larger number of vertexes");
+//			System.out.println("  Number of Vertexex: "+graph.GetVertexesNumber());
+//			System.out.println("  Number of Edges: "+graph.GetEdgesNumber()/2);
+		}
+	}
 		
+	
+	public void setExactBetweenness(boolean exactBetweenness) {
+		this.exactBetweenness = exactBetweenness;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setComponentLog(boolean componentLog) {
+		this.componentLog = componentLog;
+	}
+
+	/*
+	 * Working arrays of a BFS tree, allocated once per thread and reused for each source node
+	 */
+	private static class BFSTree {
+		// nodes discovered in BFS order (as node integers) and their position in the compressed graph
+		final int[] nodes;
+		final int[] indexes;
+		// for each position in nodes, the position of the node toward the source
+		final int[] upstream;
+		// position in nodes of each discovered node (by compressed graph index), -1 if not discovered
+		final int[] position;
+		// working array used by Flows to count the subtree sizes
+		final int[] subtree;
+
+		BFSTree(int n) {
+			nodes=new int[n];
+			indexes=new int[n];
+			upstream=new int[n];
+			position=new int[n];
+			subtree=new int[n];
+			Arrays.fill(position, -1);
+		}
+	}
+
+	private int BFS(CSRGraph workingGraph, int source, BFSTree tree) {
+		// Given a source node in the graph, BFS stores in tree the breath search first tree from each node discovered back to the source node
+		// Input value: the compressed copy of the graph and the index of the source node to calculate the breath search tree from 
+		// Input value: the tree working arrays, with all positions set to -1
+		// Return value: the number of nodes in the tree, stored in tree.nodes with tree.nodes[0] being the source 
+
+		long startTime=Metrics.start();
+		int[] offsets=workingGraph.offsets();
+		int[] targets=workingGraph.targets();
+		int[] ids=workingGraph.ids();
+		int head=0;
+		int tail=0;
+
+		// add source node as visited node at the end of the queue
+		tree.nodes[tail]=ids[source];
+		tree.indexes[tail]=source;
+		tree.position[source]=tail++;
+
 		// iterate the queue of nodes to visit while it is not empty
-		while(!nodesToVisit.isEmpty()) {
-			Integer nodeFrom=nodesToVisit.remove(); // remove the head of the queue
-			
+		while(head<tail) {
+			int nodeFrom=tree.indexes[head];
+
 			// process each neighbors of nodeFrom
-			for (Integer nodeTo:graph.getNeighbour(nodeFrom)) {
-				
-				// if the node under investigation hasn't being visited before
-				if(!visitedNodes.contains(nodeTo)) {
-					// record the upstream node toward the source node
-					BFSTreeUpstream.put(nodeTo, nodeFrom);
-					// mark the node as visited
-					visitedNodes.add(nodeTo);
-					// add the node under investigation to queue to visit its neighbors when processing a deeper level in the tree 
-					nodesToVisit.add(nodeTo);
+			for (int k=offsets[nodeFrom];k<offsets[nodeFrom+1];k++) {
+				int nodeTo=targets[k];
+				// if the node under investigation hasn't being visited before record it with its upstream node toward the source node
+				if (tree.position[nodeTo]<0) {
+					tree.nodes[tail]=ids[nodeTo];
+					tree.indexes[tail]=nodeTo;
+					tree.upstream[tail]=head;
+					tree.position[nodeTo]=tail++;
 				}
-			}				
+			}
+			head++;
 		}
-		return BFSTreeUpstream;
+
+		// reset the visited nodes for the next source
+		for (int i=0;i<tail;i++) {
+			tree.position[tree.indexes[i]]=-1;
+		}
+		Metrics.stop(Metrics.Phase.BFS_SWEEP, startTime);
+		Metrics.count(Metrics.Counter.NODES_VISITED, tail);
+		return tail;
 	}
 	
 	public void seachComponentsIterations(int iterations, boolean printDebug){
@@ -114,49 +181,40 @@ public class denseComunities {
 		// Input value: a boolean value to print debug information when true
 		// Side effect: change the graph store in the private variable "graph"
 
-		// Hash that stores the BFS tree from each node discovered versus a specific source node 		
-		HashMap<Integer,Integer> BFSTreeUpstream=new HashMap<Integer,Integer>();
-		// reset the list of debug timers
-		debugTimes.clear();
+		// reset the debug timers
+		iterationTimes.reset();
 		
 		for (int i=0;i<iterations;i++) {
-			// reset the flowsAccounting helper class that store the flow units allocated to each edge
-			flowsAccounting.resetFlows();
-
-			long startTime = System.currentTimeMillis();
+			long startTime = System.nanoTime();
 
-			// repeat the process for each node in the graph	
-			for (Integer node:graph.getVertices()) {
-				// reset the data structure storing the BFS discovered in the previous iteration
-				BFSTreeUpstream.clear();
-				// Retrieve a Breath Search First tree for the node under investigation
-				BFSTreeUpstream=BFS(node);
-				// allocate flow units on each edge discovered in the BFS tree
-				flowsAccounting.allocateFlows(node, BFSTreeUpstream);
-			}
-			// represent a edge in the graph as couple of two integers
-			Point edgeToRemove=new Point();
-			// retrieve from the helper class flowsAccounting the edge that has accumulated more flow units
-			edgeToRemove=flowsAccounting.moreFlow();
+			// retrieve the most traversed edge as a couple of two integers
+			int[] edgeToRemove=mostTraversedEdge();
 			
 			// Exit if no edge to remove was identified
 			if (edgeToRemove==null) return;
 
 			// remove from the graph the edge with more flow units - both directed links because an undirected graph
-			graph.removeEdge(edgeToRemove.x,edgeToRemove.y);
-			graph.removeEdge(edgeToRemove.y,edgeToRemove.x);
+			long removalTime=Metrics.start();
+			graph.removeEdge(edgeToRemove[0],edgeToRemove[1]);
+			graph.removeEdge(edgeToRemove[1],edgeToRemove[0]);
+			Metrics.stop(Metrics.Phase.EDGE_REMOVAL, removalTime);
 
 			// print information about the edge removed if debugging is set to true
 			if (printDebug) {
 				System.out.println("Iteration: "+(i+1));
-				System.out.println("Edge to remove: "+flowsAccounting.moreFlow());
+				System.out.println("Edge to remove: "+Arrays.toString(edgeToRemove));
 				this.printComponents();			
 			}
+			if (componentLog) {
+				// one line health check of the connected components after each removal, read from the components
+				// the graph keeps up to date as edges are removed
+				System.out.println("Iteration "+(i+1)+": "+graph.componentStats());
+			}
 
-			long endTime   = System.currentTimeMillis();
-			long totalTime = endTime - startTime;
-			// store the running time of this search in the debugTimes list
-			debugTimes.add(totalTime);
+			long totalTime = System.nanoTime() - startTime;
+			// record the running time of this iteration
+			iterationTimes.record(totalTime);
+			Metrics.record(Metrics.Phase.ITERATION, totalTime);
 		}
 
 		if (printDebug) {
@@ -165,6 +223,73 @@ public class denseComunities {
 		
 	}
 	
+	private int[] mostTraversedEdge(){
+		// Return the edge traversed by more shortest paths between the nodes of the graph
+		// Return value: the couple of nodes of the edge, null if the graph has no edges
+
+		if (exactBetweenness) {
+			// count all shortest paths between each couple of nodes on a compressed copy of the current graph
+			EdgeBetweenness betweenness=new EdgeBetweenness(new CSRGraph(graph));
+			betweenness.compute(threads);
+			return betweenness.maxEdge();
+		}
+
+		// reset the flowsAccounting helper class that store the flow units allocated to each edge
+		flowsAccounting.resetFlows();
+		CSRGraph workingGraph=new CSRGraph(graph);
+
+		if (threads<=1) {
+			BFSTree tree=new BFSTree(workingGraph.vertexCount());
+			// repeat the process for each node in the graph	
+			for (int node=0;node<workingGraph.vertexCount();node++) {
+				// Retrieve a Breath Search First tree for the node under investigation
+				// and allocate flow units on each edge discovered in the BFS tree
+				int count=BFS(workingGraph, node, tree);
+				flowsAccounting.allocateFlows(tree.nodes, tree.upstream, count, tree.subtree);
+			}
+		} else {
+			allocateFlowsParallel(workingGraph);
+		}
+		// retrieve from the helper class flowsAccounting the edge that has accumulated more flow units
+		long edge=flowsAccounting.moreFlow();
+		if (edge==Flows.NO_EDGE) return null;
+		return new int[] {Flows.edgeFrom(edge), Flows.edgeTo(edge)};
+	}
+
+	private void allocateFlowsParallel(CSRGraph workingGraph){
+		// Allocate the flow units of the BFS trees from all nodes in flowsAccounting sharing the nodes between threads
+		// Each thread takes the next node not processed yet and allocates its flows in a private Flows accumulator;
+		// the accumulators are merged in flowsAccounting when all nodes are processed
+		
+		int nodes=workingGraph.vertexCount();
+		AtomicInteger nextNode=new AtomicInteger();
+		ExecutorService pool=Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Flows>> partials=new ArrayList<Future<Flows>>();
+			for (int t=0;t<threads;t++) {
+				partials.add(pool.submit(() -> {
+					Flows partial=new Flows();
+					BFSTree tree=new BFSTree(nodes);
+					for (int n=nextNode.getAndIncrement();n<nodes;n=nextNode.getAndIncrement()) {
+						int count=BFS(workingGraph, n, tree);
+						partial.allocateFlows(tree.nodes, tree.upstream, count, tree.subtree);
+					}
+					return partial;
+				}));
+			}
+			for (Future<Flows> f:partials) {
+				flowsAccounting.addFlows(f.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Flow allocation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Flow allocation failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 	public void seachComponentsSet(int minNumberComponents, boolean printDebug){
 		// Removes from the graph under investigation the minimum number of edges to divide it in the requested number of dense communities
 		// Input value: an integer number of dense communities to discover
@@ -179,7 +304,8 @@ public class denseComunities {
 		}		
 		int iteration=0;
 		// call seachComponentsIterations as many times required to divide the graph in the requested number of dense communities
-		while (graph.getCCs().size()<minNumberComponents) {
+		// the graph keeps its number of connected components updated as edges are removed
+		while (graph.componentCount()<minNumberComponents) {
 			seachComponentsIterations(1,printDebug);
 			iteration++;
 		}
@@ -188,60 +314,90 @@ public class denseComunities {
 	}
 	
 	
+	public void searchModularityCommunities(){
+		// Divides the graph under investigation in the communities of highest modularity found by Louvain, without
+		// removing edges, and prints them as the connected communities of the other searches
+		
+		long startTime=System.nanoTime();
+		CSRGraph workingGraph=new CSRGraph(graph);
+		Louvain louvain=new Louvain(workingGraph);
+		louvain.setThreads(threads);
+		Components communities=louvain.detect();
+		System.out.println("Number of communities: "+communities.count()+" found in "+(System.nanoTime()-startTime)/1000000+" msec");
+		printPartition(workingGraph, communities);
+	}
+	
+	public void searchLabelCommunities(){
+		// Divides the graph under investigation in rough communities by label propagation (see LabelPropagation), in
+		// near linear time, and prints them as the connected communities of the other searches
+		
+		long startTime=System.nanoTime();
+		CSRGraph workingGraph=new CSRGraph(graph);
+		LabelPropagation propagation=new LabelPropagation(workingGraph);
+		propagation.setThreads(threads);
+		Components communities=propagation.detect();
+		System.out.println("Number of communities: "+communities.count()+" found in "+(System.nanoTime()-startTime)/1000000
+				+" msec and "+propagation.getIterations()+" iterations");
+		printPartition(workingGraph, communities);
+	}
+	
 	private void printComponents(){
-		// Print information about connected communities - number of nodes, edges and density of the community
+		// Print information about connected communities - number of nodes, edges, density and clustering coefficient of the community
+		
+		// retrieve from the current graph the connected communities
+		CSRGraph workingGraph=new CSRGraph(graph);
+		printPartition(workingGraph, workingGraph.connectedComponents());
+	}
+	
+	private void printPartition(CSRGraph workingGraph, Components components){
+		// Print information about the communities of a partition of workingGraph - number of nodes, edges, density,
+		// conductance and clustering coefficient of each community, distribution of their sizes and modularity of the partition
 		
 		LinkedList<Integer> nodes= new LinkedList<Integer>();
-		LinkedList<Integer> edges= new LinkedList<Integer>();
-
-		// list of connected communities as subgraph
-		LinkedList<CapGraph> ccList=new LinkedList<CapGraph>();	
-		// list of density for each subgraph
+		LinkedList<Long> edges= new LinkedList<Long>();
+		// list of density for each community
 		LinkedList<Double> densities= new LinkedList<Double>();
+		// list of conductance for each community
+		LinkedList<Double> conductances= new LinkedList<Double>();
+		// list of clustering coefficient for each community
+		LinkedList<Double> clusterings= new LinkedList<Double>();
+
+		// measure the communities in a single pass over the graph, without copying them in subgraphs
+		ComponentStats stats=new ComponentStats(components);
 
-		// retrieve from the current graph the connected communities and store them in a list of subgrapgh 
-		ccList=graph.getCCs();
+		// count the triangles of each community, the share of connected triples closed in a triangle measures how
+		// tightly the community is knit
+		Triangles triangles=new Triangles(workingGraph);
+		triangles.count(threads);
+		for (double clustering:triangles.componentClustering(components)) {
+			clusterings.add(clustering);
+		}
 		
 		System.out.println(" ---------------------------------------------- ");
-		System.out.println(" Number of connected components: "+ccList.size());
+		System.out.println(" Number of communities: "+stats.count());
 		
-		// for each subgraph print the number of vertexes, edges and density as actual number of edged divided number of edged in a full mesh
-		for (CapGraph g: ccList) {
-			nodes.add(g.GetVertexesNumber());
-			if (g.GetVertexesNumber()==0) System.out.println(g.toString());
-			
-			edges.add(g.GetEdgesNumber()/2);
-			if (g.GetVertexesNumber()>1) {
-				densities.add(g.GetEdgesNumber()/(double)(g.GetVertexesNumber()*(g.GetVertexesNumber()-1)));					
-			} else {
-				densities.add(1.0);
-			}
+		// for each community the number of vertexes, edges and density as actual number of edged divided number of edged in a full mesh
+		for (int c=0;c<stats.count();c++) {
+			nodes.add(stats.nodes(c));
+			edges.add(stats.edges(c));
+			densities.add(stats.density(c));
+			conductances.add(stats.conductance(c));
 		}
 		System.out.println("   Node Numbers "+nodes);			
 		System.out.println("   Edge Numbers "+edges);
 		System.out.println("   Densities "+densities);
+		System.out.println("   Conductances "+conductances);
+		System.out.println("   Clustering coefficients "+clusterings);
+		System.out.println("   Size distribution (size=communities) "+stats.sizeDistribution());
+		System.out.println("   Modularity "+stats.modularity());
 		System.out.println(" ---------------------------------------------- ");		
 	}
 		
 	private void printTimes(){
-		// helper function that calculate the minimum, maximum and average time for each iteration of the algorithm
-		
-		Iterator debugTimesIterator = debugTimes.iterator();
-		int iterations=0;
-		long minTime=debugTimes.peek();
-		long maxTime=minTime;
-		long sumTime=0;
-		long time;
+		// helper function that prints the minimum, maximum and average time for each iteration of the algorithm
 		
-		while(debugTimesIterator.hasNext()) {
-			iterations++;
-			time=(long) debugTimesIterator.next();
-			sumTime+=time;
-			minTime=Math.min(minTime, time);
-			minTime=Math.max(maxTime, time);
-		}
-		
-		System.out.println("Min/Avg/Max Runnig time :" +minTime+"/"+sumTime/iterations+"/"+maxTime);
+		System.out.println("Min/Avg/Max Runnig time (msec):" +iterationTimes.min()/1000000+"/"+iterationTimes.mean()/1000000
+				+"/"+iterationTimes.max()/1000000);
 	}
 	
 	public static void main(String[] args) {
@@ -249,6 +405,9 @@ public class denseComunities {
 		// true to visualize debug information in community searches
 		boolean printDebug=false;
 		
+		// expose the phase times and counters to JMX consoles while the searches run
+		Metrics.registerMBeanIfEnabled();
+
 		// select one of the data set to test against
 		 String dataSet="data/facebook_1000.txt";
 		//		String dataSet="data/facebook_2000.txt";
@@ -262,7 +421,10 @@ public class denseComunities {
 		test.printComponents();
 
 		// choose the search between iteration and minimum communities to identify
+		// or search the communities of highest modularity without removing edges
 		//test.seachComponentsIterations(10, printDebug);			
+		//test.searchModularityCommunities();
+		//test.searchLabelCommunities();
 		test.seachComponentsSet(3,printDebug);
 	
 		System.out.println(" ---------------------------------------------- ");		
@@ -271,6 +433,10 @@ public class denseComunities {
 		
 		// print the number of the communities in the final graph after removing the edges
 		test.printComponents();
+
+		// print the time spent in each phase of the search
+		Metrics.addReporter(Metrics.CONSOLE);
+		Metrics.report();
 			
 	}	
 }